@@ -0,0 +1,97 @@
+package com.example.priceingestor.client;
+
+import com.example.priceingestor.model.CoinMarket;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Record path (databind into CoinMarket, as bodyToFlux does per element) against MarketBatchDecoder
+// on one /coins/markets page, fed in network-sized chunks. Run with -prof gc (the profile's default)
+// and compare gc.alloc.rate.norm, the bytes allocated per decoded page.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketDecodeBenchmark {
+
+    @Param({"250", "1000"})
+    int coins;
+
+    // Netty's default receive buffer size is in this range
+    @Param({"8192"})
+    int chunkBytes;
+
+    private byte[] body;
+    private ObjectReader records;
+    private MarketBatchDecoder decoder;
+    private MarketBatch batch;
+
+    @Setup
+    public void setup() {
+        body = page(coins);
+        records = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(CoinMarket.class);
+        decoder = new MarketBatchDecoder(new CoinInterner());
+        batch = new MarketBatch(decoder.strings(), coins);
+        // steady state: every id, symbol and name has been seen by an earlier cycle
+        columnar();
+    }
+
+    @Benchmark
+    public List<CoinMarket> records() throws IOException {
+        return records.<CoinMarket>readValues(body).readAll();
+    }
+
+    @Benchmark
+    public MarketBatch columnar() {
+        MarketBatchDecoder.Session session = decoder.open(batch);
+        for (int from = 0; from < body.length; from += chunkBytes) {
+            session.feed(ByteBuffer.wrap(body, from, Math.min(chunkBytes, body.length - from)).slice());
+        }
+        return session.finish();
+    }
+
+    // Shaped like a real page, including the fields the ingestor ignores
+    private static byte[] page(int coins) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < coins; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double price = Math.exp(random.nextGaussian() * 4);
+            json.append(String.format(Locale.ROOT,
+                "{\"id\":\"coin-%d\",\"symbol\":\"c%d\",\"name\":\"Coin %d\",\"image\":\"https://assets.example/coins/%d/large.png\"," +
+                "\"current_price\":%.8f,\"market_cap\":%d,\"market_cap_rank\":%d,\"fully_diluted_valuation\":%d," +
+                "\"total_volume\":%d,\"high_24h\":%.8f,\"low_24h\":%.8f,\"price_change_24h\":%.8f," +
+                "\"price_change_percentage_24h\":%.5f,\"circulating_supply\":%d.0,\"total_supply\":null," +
+                "\"ath\":%.8f,\"ath_date\":\"2021-11-10T14:24:11.849Z\",\"roi\":null," +
+                "\"last_updated\":\"2025-06-01T12:00:00.000Z\",\"price_change_percentage_24h_in_currency\":%.5f}",
+                i, i, i, i, price, random.nextInt(1_000_000_000), i + 1, random.nextInt(1_000_000_000),
+                random.nextInt(100_000_000), price * 1.05, price * 0.95, price * 0.01,
+                random.nextGaussian() * 3, random.nextInt(1_000_000_000), price * 3, random.nextGaussian() * 3));
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
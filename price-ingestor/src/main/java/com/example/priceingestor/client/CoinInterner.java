@@ -0,0 +1,92 @@
+package com.example.priceingestor.client;
+
+import java.util.Arrays;
+
+// Maps coin ids, symbols and names to small int codes straight from the parser's char buffer, so a
+// string the decoder has seen before (nearly all of them, minute after minute) is never allocated
+// again. Codes are stable for the life of the interner; lookups are synchronized, which costs far
+// less than the allocation they save at the few concurrent pages a cycle has in flight.
+public final class CoinInterner {
+
+    private int[] slots = new int[1024];
+    private String[] values = new String[512];
+    private int size;
+
+    public synchronized int intern(char[] buf, int offset, int length) {
+        int hash = hash(buf, offset, length);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int code = slots[i] - 1;
+            if (code < 0) {
+                return insert(i, new String(buf, offset, length));
+            }
+            if (matches(values[code], buf, offset, length)) {
+                return code;
+            }
+        }
+    }
+
+    public int intern(String value) {
+        return intern(value.toCharArray(), 0, value.length());
+    }
+
+    public synchronized String value(int code) {
+        return values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int insert(int slot, String value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        int[] grown = new int[slots.length * 2];
+        int mask = grown.length - 1;
+        for (int code = 0; code < size; code++) {
+            String v = values[code];
+            int i = hash(v) & mask;
+            while (grown[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            grown[i] = code + 1;
+        }
+        slots = grown;
+    }
+
+    private static int hash(char[] buf, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Same as the char[] hash, so both sides of a lookup agree
+    private static int hash(String s) {
+        int h = s.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String s, char[] buf, int offset, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.priceingestor.client;
+
+import com.example.priceingestor.model.FixedPoint;
+import java.util.Arrays;
+
+// One /coins/markets page in columns: a row per coin, with interned string codes and primitive
+// numbers (NaN where upstream sent null or nothing). Prices are fixed-point, decoded exactly from
+// the response text (FixedPoint.NULL where missing). Batches are meant to be reused: clear() keeps
+// the arrays, which only grow when a page is longer than any seen before.
+public final class MarketBatch {
+
+    private final CoinInterner strings;
+    private int size;
+    private int[] coinIds;
+    private int[] symbols;
+    private int[] names;
+    private long[] prices;
+    private byte[] priceScales;
+    private double[] marketCaps;
+    private double[] pctChanges24h;
+    private double[] volumes;
+
+    public MarketBatch(CoinInterner strings, int capacity) {
+        this.strings = strings;
+        int c = Math.max(capacity, 1);
+        coinIds = new int[c];
+        symbols = new int[c];
+        names = new int[c];
+        prices = new long[c];
+        priceScales = new byte[c];
+        marketCaps = new double[c];
+        pctChanges24h = new double[c];
+        volumes = new double[c];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String coinId(int row) { return string(coinIds[row]); }
+
+    public String symbol(int row) { return string(symbols[row]); }
+
+    public String name(int row) { return string(names[row]); }
+
+    public long priceFp(int row) { return prices[row]; }
+
+    public int priceScale(int row) { return priceScales[row]; }
+
+    public double price(int row) { return FixedPoint.toDouble(prices[row], priceScales[row]); }
+
+    public double marketCap(int row) { return marketCaps[row]; }
+
+    public double pctChange24h(int row) { return pctChanges24h[row]; }
+
+    public double volume(int row) { return volumes[row]; }
+
+    // For the boundary with record-based code (PriceTick), where a missing value is null
+    public static Double boxed(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    // Appends a row with every field missing and returns its index; the decoder fills it in
+    int addRow() {
+        if (size == coinIds.length) {
+            int grown = size * 2;
+            coinIds = Arrays.copyOf(coinIds, grown);
+            symbols = Arrays.copyOf(symbols, grown);
+            names = Arrays.copyOf(names, grown);
+            prices = Arrays.copyOf(prices, grown);
+            priceScales = Arrays.copyOf(priceScales, grown);
+            marketCaps = Arrays.copyOf(marketCaps, grown);
+            pctChanges24h = Arrays.copyOf(pctChanges24h, grown);
+            volumes = Arrays.copyOf(volumes, grown);
+        }
+        coinIds[size] = -1;
+        symbols[size] = -1;
+        names[size] = -1;
+        prices[size] = FixedPoint.NULL;
+        priceScales[size] = 0;
+        marketCaps[size] = Double.NaN;
+        pctChanges24h[size] = Double.NaN;
+        volumes[size] = Double.NaN;
+        return size++;
+    }
+
+    // Drops the last row (an element without an id)
+    void removeLastRow() {
+        size--;
+    }
+
+    boolean hasCoinId(int row) { return coinIds[row] >= 0; }
+
+    void coinId(int row, int code) { coinIds[row] = code; }
+
+    void symbol(int row, int code) { symbols[row] = code; }
+
+    void name(int row, int code) { names[row] = code; }
+
+    void price(int row, long unscaled, int scale) {
+        prices[row] = unscaled;
+        priceScales[row] = (byte) scale;
+    }
+
+    void marketCap(int row, double v) { marketCaps[row] = v; }
+
+    void pctChange24h(int row, double v) { pctChanges24h[row] = v; }
+
+    void volume(int row, double v) { volumes[row] = v; }
+
+    CoinInterner strings() { return strings; }
+
+    private String string(int code) {
+        return code < 0 ? null : strings.value(code);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.priceingestor.client;
+
+import com.example.priceingestor.model.FixedPoint;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Decodes a /coins/markets array into a MarketBatch with Jackson's non-blocking parser, fed the
+// network buffers as they arrive. Nothing is allocated per coin: strings go through the interner
+// from the parser's own char buffer, numbers are read as primitives, and fields other than
+// id/symbol/name/current_price/market_cap/price_change_percentage_24h/total_volume (including
+// nested objects such as roi) are skipped token by token without being materialized. current_price
+// is parsed straight from the number's text into fixed point, so it never passes through a double.
+public final class MarketBatchDecoder {
+
+    // The fast parser reads doubles from the parser's char buffer instead of a String per number
+    private static final JsonFactory JSON = JsonFactory.builder()
+        .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+        .build();
+
+    private final CoinInterner strings;
+
+    public MarketBatchDecoder(CoinInterner strings) {
+        this.strings = strings;
+    }
+
+    public CoinInterner strings() {
+        return strings;
+    }
+
+    // Each buffer is released as soon as its tokens are consumed, and the rest on error or cancel
+    public Mono<MarketBatch> decode(Flux<DataBuffer> body, MarketBatch into) {
+        return body
+            .reduceWith(() -> open(into), (session, buffer) -> {
+                try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+                    while (it.hasNext()) {
+                        session.feed(it.next());
+                    }
+                } finally {
+                    DataBufferUtils.release(buffer);
+                }
+                return session;
+            })
+            .map(Session::finish)
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    public Session open(MarketBatch into) {
+        if (into.strings() != strings) {
+            throw new IllegalArgumentException("batch was created for a different interner");
+        }
+        into.clear();
+        try {
+            return new Session(JSON.createNonBlockingByteBufferParser(), into);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private enum Field { ID, SYMBOL, NAME, PRICE, MARKET_CAP, PCT_CHANGE_24H, VOLUME, OTHER }
+
+    // One response body; feed() every chunk in order, then finish()
+    public final class Session {
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final MarketBatch batch;
+        private int depth;
+        private int row = -1;
+        private Field field = Field.OTHER;
+
+        private Session(JsonParser parser, MarketBatch batch) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.batch = batch;
+        }
+
+        // The parser reads `chunk` in place, so every token in it is consumed before returning
+        public void feed(ByteBuffer chunk) {
+            try {
+                feeder.feedInput(chunk);
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public MarketBatch finish() {
+            try {
+                feeder.endOfInput();
+                drain();
+                parser.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (depth != 0) {
+                throw new UncheckedIOException(new IOException("truncated /coins/markets body"));
+            }
+            return batch;
+        }
+
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        depth++;
+                        if (depth == 2 && token == JsonToken.START_OBJECT) {
+                            row = batch.addRow();
+                        }
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        if (depth == 2 && row >= 0) {
+                            if (!batch.hasCoinId(row)) {
+                                batch.removeLastRow();
+                            }
+                            row = -1;
+                        }
+                        depth--;
+                    }
+                    case FIELD_NAME -> {
+                        if (depth == 2) {
+                            field = field(parser.currentName());
+                        }
+                    }
+                    default -> {
+                        if (depth == 2 && row >= 0) {
+                            value(token);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void value(JsonToken token) throws IOException {
+            switch (field) {
+                case ID -> batch.coinId(row, text(token));
+                case SYMBOL -> batch.symbol(row, text(token));
+                case NAME -> batch.name(row, text(token));
+                case PRICE -> price(token);
+                case MARKET_CAP -> batch.marketCap(row, number(token));
+                case PCT_CHANGE_24H -> batch.pctChange24h(row, number(token));
+                case VOLUME -> batch.volume(row, number(token));
+                case OTHER -> { }
+            }
+        }
+
+        private int text(JsonToken token) throws IOException {
+            if (token != JsonToken.VALUE_STRING) {
+                return -1;
+            }
+            return strings.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+
+        // Exact from the number's text, at the largest scale up to MAX_SCALE that fits, then normalized
+        private void price(JsonToken token) throws IOException {
+            if (!token.isNumeric()) {
+                return;
+            }
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            for (int scale = FixedPoint.MAX_SCALE; scale >= 0; scale--) {
+                long v = FixedPoint.parse(text, offset, length, scale);
+                if (v != FixedPoint.NULL) {
+                    int normal = FixedPoint.normalScale(v, scale);
+                    batch.price(row, FixedPoint.rescale(v, scale, normal), normal);
+                    return;
+                }
+            }
+        }
+
+        private double number(JsonToken token) throws IOException {
+            return token.isNumeric() ? parser.getDoubleValue() : Double.NaN;
+        }
+    }
+
+    // Field names come back canonicalized by the parser, so this does not allocate either
+    private static Field field(String name) {
+        return switch (name) {
+            case "id" -> Field.ID;
+            case "symbol" -> Field.SYMBOL;
+            case "name" -> Field.NAME;
+            case "current_price" -> Field.PRICE;
+            case "market_cap" -> Field.MARKET_CAP;
+            case "price_change_percentage_24h" -> Field.PCT_CHANGE_24H;
+            case "total_volume" -> Field.VOLUME;
+            default -> Field.OTHER;
+        };
+    }
+}
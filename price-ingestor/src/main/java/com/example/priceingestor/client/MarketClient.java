@@ -1,58 +1,151 @@
 package com.example.priceingestor.client;
 
+import com.example.priceingestor.model.CoinListing;
 import com.example.priceingestor.model.CoinMarket;
-import java.time.Duration;
+import com.example.priceingestor.model.MarketChart;
+import com.example.priceingestor.replay.PayloadStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
-import reactor.core.publisher.Mono;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
-import reactor.util.retry.Retry;
+import reactor.core.publisher.Mono;
 
 @Component
 public class MarketClient {
 
-  private final WebClient http;
-  private final String source;
+  // Numbers keep the text they arrived as (BigDecimal, trailing zeros and all), never a double
+  private static final ObjectMapper EXACT_JSON = JsonMapper.builder()
+      .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+      .nodeFactory(JsonNodeFactory.withExactBigDecimals(true))
+      .build();
+
+  private final UpstreamHttp http;
+  private final MarketBatchDecoder decoder = new MarketBatchDecoder(new CoinInterner());
 
   public MarketClient(
       WebClient.Builder builder,
+      MeterRegistry registry,
       @Value("${ingestor.base-url}") String baseUrl,
       @Value("${ingestor.api-key-header}") String keyHeader,
       @Value("${ingestor.api-key}") String apiKey,
-      @Value("${ingestor.source}") String source
+      @Value("${ingestor.source}") String source,
+      @Value("${ingestor.budget.calls-per-minute}") int callsPerMinute,
+      @Value("${ingestor.budget.burst}") int burst,
+      @Value("${ingestor.budget.live-reserve}") int liveReserve,
+      Optional<PayloadStore> recorder
   ) {
-    WebClient.Builder b = builder
-        .baseUrl(baseUrl)
-        .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
-
-    if (apiKey != null && !apiKey.isBlank()) {
-      b.defaultHeader(keyHeader, apiKey);
-    }
-    this.http = b.build();
-    this.source = source;
+    this.http = new UpstreamHttp(builder, registry, source, baseUrl, keyHeader, apiKey,
+        new RequestBudget(source, callsPerMinute, burst, liveReserve), recorder.orElse(null));
   }
 
-  public String source() { return source; }
+  public String source() { return http.source(); }
+
+  public RequestBudget budget() { return http.budget(); }
 
   // CoinGecko-style endpoint; adjust uri/params for your provider
   public Flux<CoinMarket> topMarkets(String vsCurrency, int perPage, int page) {
-    return http.get()
-        .uri(uri -> uri.path("/coins/markets")
-            .queryParam("vs_currency", vsCurrency)
-            .queryParam("order", "volume_desc")
-            .queryParam("per_page", perPage)
-            .queryParam("page", page)
-            .queryParam("price_change_percentage", "24h")
-            .build())
-        .retrieve()
-        .onStatus(s -> s.value() == 429, resp -> Mono.error(new RuntimeException("Rate limited")))
-        .bodyToFlux(CoinMarket.class)
-        .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
-            .filter(ex -> ex instanceof WebClientResponseException || ex instanceof RuntimeException))
-        .timeout(Duration.ofSeconds(15));
+    return markets(RequestPriority.LIVE, vsCurrency, perPage, page);
+  }
+
+  // The same ranking walked page by page at METADATA priority, for the daily coin universe refresh;
+  // stops at the first short page
+  public Flux<CoinMarket> marketsForListing(String vsCurrency, int perPage, int maxPages) {
+    return Flux.range(1, maxPages)
+        .concatMap(page -> markets(RequestPriority.METADATA, vsCurrency, perPage, page).collectList())
+        .takeUntil(pageItems -> pageItems.size() < perPage)
+        .concatMapIterable(pageItems -> pageItems);
+  }
+
+  private Flux<CoinMarket> markets(RequestPriority priority, String vsCurrency, int perPage, int page) {
+    return http.get(priority, marketsUri(vsCurrency, perPage, page), CoinMarket.class);
+  }
+
+  private static Function<UriBuilder, URI> marketsUri(String vsCurrency, int perPage, int page) {
+    return uri -> uri.path("/coins/markets")
+        .queryParam("vs_currency", vsCurrency)
+        .queryParam("order", "volume_desc")
+        .queryParam("per_page", perPage)
+        .queryParam("page", page)
+        .queryParam("price_change_percentage", "24h")
+        .build();
+  }
+
+  // An empty batch sized for a page, bound to this client's interner
+  public MarketBatch newBatch(int capacity) {
+    return new MarketBatch(decoder.strings(), capacity);
+  }
+
+  // The live /coins/markets page decoded straight from the network buffers into `into` (see MarketBatchDecoder)
+  public Mono<MarketBatch> topMarketBatch(String vsCurrency, int perPage, int page, MarketBatch into) {
+    return http.stream(RequestPriority.LIVE, marketsUri(vsCurrency, perPage, page), body -> decoder.decode(body, into))
+        .next();
+  }
+
+  // Walks every /coins/markets page until a short (or empty) page marks the end of the universe.
+  // Up to `concurrency` pages are in flight at once; flatMapSequential keeps them in page order,
+  // and pages still in flight past the end are cancelled once the short page arrives.
+  // Each page takes a fresh batch from `batches`.
+  public Flux<MarketBatch> allMarketBatches(String vsCurrency, int perPage, int maxPages, int concurrency, Supplier<MarketBatch> batches) {
+    return Flux.range(1, maxPages)
+        .flatMapSequential(page -> topMarketBatch(vsCurrency, perPage, page, batches.get()), concurrency, 1)
+        .takeUntil(batch -> batch.size() < perPage);
+  }
+
+  // Fetches exactly the given pages (e.g. this replica's shard), up to `concurrency` at a time, in the given order
+  public Flux<MarketBatch> pageBatches(String vsCurrency, int perPage, List<Integer> pages, int concurrency, Supplier<MarketBatch> batches) {
+    return Flux.fromIterable(pages)
+        .flatMapSequential(page -> topMarketBatch(vsCurrency, perPage, page, batches.get()), concurrency);
+  }
+
+  // Latest price, market cap and 24h change for up to a few hundred coins and several currencies in
+  // one call: {"bitcoin":{"usd":65000.1,"usd_market_cap":1.2e12,"usd_24h_change":-1.5,"eur":...}}.
+  // Decimal numbers come back as exact decimal nodes, so a price can be parsed from its text.
+  public Mono<JsonNode> simplePrice(List<String> coinIds, List<String> vsCurrencies) {
+    return http.stream(RequestPriority.LIVE, uri -> uri.path("/simple/price")
+        .queryParam("ids", String.join(",", coinIds))
+        .queryParam("vs_currencies", String.join(",", vsCurrencies))
+        .queryParam("include_market_cap", true)
+        .queryParam("include_24hr_change", true)
+        .build(), body -> DataBufferUtils.join(body).map(buffer -> {
+          try (InputStream in = buffer.asInputStream(true)) {
+            return EXACT_JSON.readTree(in);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }))
+        .next();
+  }
+
+  // Historical points for one coin; CoinGecko picks the granularity from the range length
+  // (about 5-minutely for windows up to a day, hourly up to 90 days)
+  public Mono<MarketChart> marketChartRange(String coinId, String vsCurrency, Instant from, Instant to) {
+    return http.get(RequestPriority.BACKFILL, uri -> uri.path("/coins/{id}/market_chart/range")
+        .queryParam("vs_currency", vsCurrency)
+        .queryParam("from", from.getEpochSecond())
+        .queryParam("to", to.getEpochSecond())
+        .build(coinId), MarketChart.class)
+        .next();
+  }
+
+  // id/symbol/name of every listed coin
+  public Flux<CoinListing> coinsList() {
+    return http.get(RequestPriority.METADATA, uri -> uri.path("/coins/list").build(), CoinListing.class);
   }
 }
@@ -0,0 +1,220 @@
+package com.example.priceingestor.client;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.springframework.http.HttpHeaders;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+// Shared call budget for one upstream provider.
+// A token bucket refilled at calls-per-minute (capped at `burst`) hands out permits in priority
+// order, so queued LIVE calls always go before BACKFILL and METADATA ones, and `liveReserve`
+// tokens are kept back for LIVE calls only. A 429 Retry-After or an exhausted
+// X-RateLimit-Remaining header pauses every caller until the provider's window resets.
+// Wake-ups run on Reactor's shared parallel scheduler, so a budget owns no threads and needs no
+// shutdown; tests pass a virtual-time scheduler and its clock instead.
+public class RequestBudget {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+    private final int callsPerMinute;
+    private final int burst;
+    private final int liveReserve;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private final Scheduler timer;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+    private long sequence;
+    private Disposable wakeUp;
+    private long wakeUpAt;
+
+    public RequestBudget(String name, int callsPerMinute, int burst, int liveReserve) {
+        this(name, callsPerMinute, burst, liveReserve, Schedulers.parallel(), System::nanoTime);
+    }
+
+    RequestBudget(String name, int callsPerMinute, int burst, int liveReserve, Scheduler timer, LongSupplier nanoClock) {
+        if (callsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Request budget for " + name + " needs positive calls-per-minute and burst");
+        }
+        this.name = name;
+        this.callsPerMinute = callsPerMinute;
+        this.burst = burst;
+        this.liveReserve = Math.min(liveReserve, burst - 1);
+        this.timer = timer;
+        this.nanoClock = nanoClock;
+        this.tokens = burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // Completes when the caller may issue one request
+    public Mono<Void> acquire(RequestPriority priority) {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            synchronized (this) {
+                waiter = new Waiter(priority, sequence++, sink);
+                waiters.add(waiter);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            });
+            dispatch();
+        });
+    }
+
+    public synchronized int queued() {
+        return waiters.size();
+    }
+
+    // Called for every response, including errors
+    public void onResponse(HttpHeaders headers) {
+        String remaining = headers.getFirst("X-RateLimit-Remaining");
+        if (remaining == null) {
+            return;
+        }
+        try {
+            long left = Long.parseLong(remaining.trim());
+            synchronized (this) {
+                refill(nanoClock.getAsLong());
+                tokens = Math.min(tokens, left);
+            }
+            if (left <= 0) {
+                resetDelay(headers).ifPresent(this::pause);
+            }
+        } catch (NumberFormatException ignored) {
+            // provider-specific format we don't understand; fall back to our own accounting
+        }
+    }
+
+    public void onRateLimited(Duration retryAfter) {
+        pause(retryAfter);
+    }
+
+    private void pause(Duration delay) {
+        synchronized (this) {
+            long until = nanoClock.getAsLong() + delay.toNanos();
+            pausedUntil = Math.max(pausedUntil, until);
+            tokens = 0;
+            refilledAt = pausedUntil;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        List<MonoSink<Void>> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            refill(now);
+            while (!waiters.isEmpty()) {
+                if (now < pausedUntil) {
+                    scheduleWakeUp(pausedUntil - now);
+                    break;
+                }
+                Waiter next = waiters.peek();
+                double needed = next.priority == RequestPriority.LIVE ? 1 : 1 + liveReserve;
+                if (tokens < needed) {
+                    scheduleWakeUp((long) Math.ceil((needed - tokens) * NANOS_PER_MINUTE / callsPerMinute));
+                    break;
+                }
+                waiters.poll();
+                tokens -= 1;
+                ready.add(next.sink);
+            }
+        }
+        // Signal outside the lock: success() subscribes the actual HTTP call
+        ready.forEach(MonoSink::success);
+    }
+
+    private void refill(long now) {
+        if (now <= refilledAt) {
+            return;
+        }
+        tokens = Math.min(burst, tokens + (double) (now - refilledAt) * callsPerMinute / NANOS_PER_MINUTE);
+        refilledAt = now;
+    }
+
+    private void scheduleWakeUp(long delayNanos) {
+        long at = nanoClock.getAsLong() + delayNanos;
+        if (wakeUp != null) {
+            if (wakeUpAt <= at) {
+                return;
+            }
+            wakeUp.dispose();
+        }
+        wakeUpAt = at;
+        wakeUp = timer.schedule(this::onWakeUp, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+    }
+
+    private void onWakeUp() {
+        synchronized (this) {
+            // forget the task that is running now before dispatching again
+            wakeUp = null;
+        }
+        dispatch();
+    }
+
+    // Retry-After is either delta-seconds or an HTTP date
+    public static Optional<Duration> retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                // a date already past means retry now, not wait as long again
+                Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                return Optional.of(wait.isNegative() ? Duration.ZERO : wait);
+            } catch (DateTimeParseException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    // X-RateLimit-Reset is seconds until reset, or an epoch timestamp with some providers
+    private static Optional<Duration> resetDelay(HttpHeaders headers) {
+        String value = headers.getFirst("X-RateLimit-Reset");
+        if (value == null) {
+            return retryAfter(headers);
+        }
+        try {
+            long reset = Long.parseLong(value.trim());
+            long nowSeconds = System.currentTimeMillis() / 1000;
+            long seconds = reset > 1_000_000_000L ? reset - nowSeconds : reset;
+            return Optional.of(Duration.ofSeconds(Math.max(0, seconds)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private record Waiter(RequestPriority priority, long seq, MonoSink<Void> sink) implements Comparable<Waiter> {
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+}
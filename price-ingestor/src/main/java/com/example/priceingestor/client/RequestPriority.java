@@ -0,0 +1,8 @@
+package com.example.priceingestor.client;
+
+// Order matters: earlier constants are served first when calls queue up for the budget
+public enum RequestPriority {
+    LIVE,
+    BACKFILL,
+    METADATA
+}
@@ -0,0 +1,159 @@
+package com.example.priceingestor.client;
+
+import com.example.priceingestor.exception.RateLimitedException;
+import com.example.priceingestor.replay.PayloadStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+// GET plumbing shared by every upstream provider: one WebClient and one RequestBudget per provider,
+// so a slow or throttled source never eats into another source's allowance
+public class UpstreamHttp {
+
+    // Used when a 429 comes back without a usable Retry-After
+    private static final Duration DEFAULT_PENALTY = Duration.ofSeconds(60);
+    private static final int RATE_LIMIT_RETRIES = 3;
+    private static final ObjectMapper JSON = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final WebClient http;
+    private final String source;
+    private final RequestBudget budget;
+    private final Counter throttled;
+    private final PayloadStore recorder;
+
+    public UpstreamHttp(
+        WebClient.Builder builder,
+        MeterRegistry registry,
+        String source,
+        String baseUrl,
+        String keyHeader,
+        String apiKey,
+        RequestBudget budget,
+        PayloadStore recorder
+    ) {
+        WebClient.Builder b = builder.clone()
+            .baseUrl(baseUrl)
+            .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+
+        if (keyHeader != null && apiKey != null && !apiKey.isBlank()) {
+            b.defaultHeader(keyHeader, apiKey);
+        }
+        this.http = b.build();
+        this.source = source;
+        this.budget = budget;
+        this.recorder = recorder;
+        this.throttled = Counter.builder("ingestor.upstream.throttled").tag("source", source).register(registry);
+        Gauge.builder("ingestor.upstream.queued", budget, RequestBudget::queued).tag("source", source).register(registry);
+    }
+
+    public String source() { return source; }
+
+    public RequestBudget budget() { return budget; }
+
+    // Every call waits for a permit from the provider's budget. A 429 pauses the budget for the
+    // provider's Retry-After and re-queues the call; other transient failures back off.
+    // A JSON array body is decoded element by element, so large listings are never held whole
+    // (except while recording, when the raw body is buffered once to be stored).
+    public <T> Flux<T> get(RequestPriority priority, Function<UriBuilder, URI> uri, Class<T> type) {
+        return exchange(priority, uri, resp -> resp.bodyToFlux(type), bytes -> decode(bytes, type));
+    }
+
+    // Same plumbing, but the body is handed to `decoder` as the raw network buffers, which it must
+    // release. While recording, it gets the buffered body as a single buffer instead.
+    public <T> Flux<T> stream(RequestPriority priority, Function<UriBuilder, URI> uri, Function<Flux<DataBuffer>, ? extends Publisher<T>> decoder) {
+        return exchange(priority, uri,
+            resp -> Flux.from(decoder.apply(resp.bodyToFlux(DataBuffer.class))),
+            bytes -> Flux.from(decoder.apply(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes)))));
+    }
+
+    private <T> Flux<T> exchange(
+        RequestPriority priority,
+        Function<UriBuilder, URI> uri,
+        Function<ClientResponse, Flux<T>> live,
+        Function<byte[], Flux<T>> recorded
+    ) {
+        Flux<T> call = Flux.defer(() -> {
+            long sent = System.nanoTime();
+            return http.get()
+                .uri(uri)
+                .exchangeToFlux(resp -> {
+                    HttpHeaders headers = resp.headers().asHttpHeaders();
+                    budget.onResponse(headers);
+                    if (resp.statusCode().value() == 429) {
+                        Duration retryAfter = RequestBudget.retryAfter(headers).orElse(DEFAULT_PENALTY);
+                        throttled.increment();
+                        budget.onRateLimited(retryAfter);
+                        return resp.releaseBody().thenMany(Flux.error(new RateLimitedException(source, retryAfter)));
+                    }
+                    if (resp.statusCode().isError()) {
+                        return resp.createException().flatMapMany(Flux::error);
+                    }
+                    if (recorder != null) {
+                        return record(resp.request().getURI(), sent, resp.statusCode().value(), resp.bodyToMono(byte[].class), recorded);
+                    }
+                    return live.apply(resp);
+                })
+                // Only the request itself is timed; waiting for a permit is not a failure
+                .timeout(Duration.ofSeconds(15));
+        });
+
+        return budget.acquire(priority)
+            .thenMany(call)
+            .retryWhen(Retry.max(RATE_LIMIT_RETRIES).filter(ex -> ex instanceof RateLimitedException))
+            .retryWhen(Retry.backoff(3, Duration.ofSeconds(2)).filter(UpstreamHttp::isTransient));
+    }
+
+    private <T> Flux<T> record(URI requested, long sentNanos, int status, Mono<byte[]> body, Function<byte[], Flux<T>> decode) {
+        String key = requested.getRawPath() + (requested.getRawQuery() == null ? "" : "?" + requested.getRawQuery());
+        return body
+            .defaultIfEmpty(new byte[0])
+            .flatMapMany(bytes -> {
+                // queued for the recorder's own thread; decoding does not wait for the write
+                recorder.submit(key, (System.nanoTime() - sentNanos) / 1_000_000, status, bytes);
+                return decode.apply(bytes);
+            });
+    }
+
+    // A top-level JSON array yields its elements, anything else a single value
+    private static <T> Flux<T> decode(byte[] body, Class<T> type) {
+        if (body.length == 0) {
+            return Flux.empty();
+        }
+        ObjectReader reader = JSON.readerFor(type);
+        try {
+            return Flux.fromIterable(reader.<T>readValues(body).readAll());
+        } catch (IOException e) {
+            return Flux.error(new UncheckedIOException(e));
+        }
+    }
+
+    private static boolean isTransient(Throwable ex) {
+        if (ex instanceof WebClientResponseException w) {
+            return w.getStatusCode().is5xxServerError();
+        }
+        return ex instanceof WebClientRequestException || ex instanceof TimeoutException;
+    }
+}
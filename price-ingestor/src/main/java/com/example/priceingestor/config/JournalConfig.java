@@ -0,0 +1,24 @@
+package com.example.priceingestor.config;
+
+import com.example.priceingestor.journal.TickJournal;
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "ingestor.journal.enabled", havingValue = "true")
+public class JournalConfig {
+
+    @Bean(destroyMethod = "close")
+    public TickJournal tickJournal(
+        @Value("${ingestor.journal.dir}") String dir,
+        @Value("${ingestor.journal.segment-bytes}") int segmentBytes,
+        @Value("${ingestor.journal.max-segments}") int maxSegments,
+        @Value("${ingestor.journal.retain-segments}") int retainSegments,
+        @Value("${ingestor.journal.fsync}") boolean fsync
+    ) {
+        return new TickJournal(Path.of(dir), segmentBytes, maxSegments, retainSegments, fsync);
+    }
+}
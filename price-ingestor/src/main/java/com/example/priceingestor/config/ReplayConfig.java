@@ -0,0 +1,21 @@
+package com.example.priceingestor.config;
+
+import com.example.priceingestor.replay.PayloadStore;
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "ingestor.record.enabled", havingValue = "true")
+public class ReplayConfig {
+
+    @Bean(destroyMethod = "close")
+    public PayloadStore payloadRecorder(
+        @Value("${ingestor.record.dir}") String dir,
+        @Value("${ingestor.record.segment-bytes}") long segmentBytes
+    ) {
+        return new PayloadStore(Path.of(dir), segmentBytes);
+    }
+}
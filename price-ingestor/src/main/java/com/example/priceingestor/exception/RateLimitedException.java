@@ -0,0 +1,17 @@
+package com.example.priceingestor.exception;
+
+import java.time.Duration;
+
+public class RateLimitedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RateLimitedException(String source, Duration retryAfter) {
+        super("Rate limited by " + source + ", retry after " + retryAfter.toSeconds() + "s");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.priceingestor.journal;
+
+import com.example.priceingestor.model.PriceTick;
+import java.util.List;
+
+// One batch of ticks as it was handed to the DB
+public record JournalRecord(List<PriceTick> ticks) {}
@@ -0,0 +1,103 @@
+package com.example.priceingestor.journal;
+
+import com.example.priceingestor.repository.PriceWriter;
+import com.example.priceingestor.service.PriceSink;
+import com.example.priceingestor.service.PriceWriters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Drains journaled batches into prices in journal order.
+// Live cycles call drain() right after appending, so normally each batch is written immediately.
+// When Postgres is unreachable the failure is remembered and live cycles stop trying (their data is
+// already on disk); the scheduled retry keeps probing and replays the backlog once the DB is back.
+// Replays are idempotent thanks to the unique (source, symbol, ts_bucket) index. A record the
+// journal cannot decode is logged, counted in ingestor.journal.skipped_records and committed past,
+// so it cannot stall every later batch behind it.
+@Component
+@ConditionalOnProperty(name = "ingestor.journal.enabled", havingValue = "true")
+public class JournalReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplayer.class);
+
+    private final TickJournal journal;
+    private final PriceSink sink;
+    private final PriceWriter writer;
+    private final Counter skippedRecords;
+    private volatile boolean dbDown;
+
+    public JournalReplayer(
+        TickJournal journal,
+        PriceSink sink,
+        PriceWriters writers,
+        MeterRegistry registry,
+        @Value("${ingestor.writer}") String writerName
+    ) {
+        this.journal = journal;
+        this.sink = sink;
+        this.writer = writers.get(writerName);
+        Gauge.builder("ingestor.journal.segments", journal, TickJournal::segmentCount).register(registry);
+        Gauge.builder("ingestor.journal.dropped_segments", journal, TickJournal::droppedSegments).register(registry);
+        this.skippedRecords = Counter.builder("ingestor.journal.skipped_records")
+            .description("Journaled records that could not be decoded and were skipped")
+            .register(registry);
+    }
+
+    public JournalPosition append(JournalRecord record) {
+        return journal.append(record);
+    }
+
+    // Called by live cycles; a no-op while the DB is known to be down
+    public int drainIfHealthy() {
+        return dbDown ? 0 : drain();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestor.journal.replay-interval-ms}")
+    public void retry() {
+        if (dbDown || journal.hasPending()) {
+            int inserted = drain();
+            if (!dbDown && inserted > 0) {
+                log.info("journal replay caught up, {} rows inserted", inserted);
+            }
+        }
+    }
+
+    // Writes every pending record in order; stops at the first failure and leaves it pending
+    public synchronized int drain() {
+        int inserted = 0;
+        while (true) {
+            Optional<TickJournal.Entry> entry;
+            try {
+                entry = journal.read(journal.checkpoint());
+            } catch (TickJournal.UnreadableRecordException e) {
+                skippedRecords.increment();
+                log.error("skipping unreadable journal record at {}: {}", journal.checkpoint(), e.getMessage());
+                journal.commit(e.next());
+                continue;
+            }
+            if (entry.isEmpty()) {
+                break;
+            }
+            JournalRecord record = entry.get().record();
+            try {
+                inserted += sink.persist(writer, record.ticks());
+            } catch (RuntimeException e) {
+                if (!dbDown) {
+                    log.error("journal replay failed, batches stay on disk until the database is back", e);
+                }
+                dbDown = true;
+                return inserted;
+            }
+            journal.commit(entry.get().next());
+        }
+        dbDown = false;
+        return inserted;
+    }
+}
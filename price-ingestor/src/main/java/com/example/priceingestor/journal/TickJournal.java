@@ -0,0 +1,405 @@
+package com.example.priceingestor.journal;
+
+import com.example.priceingestor.model.PriceTick;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Append-only, segmented, memory-mapped journal of ingested batches.
+//
+// Each segment is a fixed-size file (NNNNNNNNNNNNNNNNNNNN.seg) mapped read-write; records are
+//   [int payload length][int crc32(payload)][payload]
+// and a zero length marks the end of written data (fresh mappings are zero-filled). A payload is
+// [byte VERSION][int tick count] followed by the ticks (see encode); one that passes its CRC but
+// cannot be decoded (another version) is reported as an UnreadableRecordException carrying the
+// position after it, so the replayer can skip it instead of guessing at its layout. When a record
+// does not fit, the journal rolls to the next segment. The `checkpoint` file holds the position of
+// the first record not yet confirmed in Postgres; fully replayed segments beyond
+// `retainSegments` are deleted, and if pending data ever exceeds `maxSegments` the oldest segment
+// is dropped so disk use stays bounded.
+public class TickJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(TickJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".seg";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final byte VERSION = 1;
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final int retainSegments;
+    private final boolean fsync;
+    private final TreeSet<Long> segments = new TreeSet<>();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(64 * 1024);
+
+    private long activeSegment;
+    private MappedByteBuffer active;
+    private int writeOffset;
+    private JournalPosition checkpoint;
+    private long droppedSegments;
+
+    // Cached read-only mapping for replay
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    public TickJournal(Path dir, int segmentBytes, int maxSegments, int retainSegments, boolean fsync) {
+        if (segmentBytes <= HEADER_BYTES || maxSegments < 2) {
+            throw new IllegalArgumentException("Journal needs segment-bytes > " + HEADER_BYTES + " and max-segments >= 2");
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.retainSegments = retainSegments;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(dir);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal in " + dir, e);
+        }
+    }
+
+    public synchronized JournalPosition append(JournalRecord record) {
+        byte[] payload = encode(record);
+        int size = HEADER_BYTES + payload.length;
+        // keep room for the zero end marker
+        if (size + 4 > segmentBytes) {
+            throw new IllegalArgumentException("Journal record of " + size + " bytes exceeds segment size " + segmentBytes);
+        }
+        if (writeOffset + size + 4 > segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        int start = writeOffset;
+        // payload and crc first, length last, so a torn write never looks like a complete record
+        active.putInt(start + 4, (int) crc.getValue());
+        active.put(start + HEADER_BYTES, payload);
+        active.putInt(start, payload.length);
+        if (fsync) {
+            active.force(start, size);
+        }
+        writeOffset += size;
+        return new JournalPosition(activeSegment, writeOffset);
+    }
+
+    // The record at `from`, if one has been written, with the position right after it
+    public synchronized Optional<Entry> read(JournalPosition from) {
+        return locate(from).map(raw -> new Entry(decode(raw.payload(), raw.next()), raw.next()));
+    }
+
+    private Optional<Raw> locate(JournalPosition from) {
+        JournalPosition pos = from;
+        while (true) {
+            if (!segments.contains(pos.segment())) {
+                Long later = segments.higher(pos.segment());
+                if (later == null) {
+                    return Optional.empty();
+                }
+                pos = new JournalPosition(later, 0);
+            }
+            ByteBuffer buf = mapForRead(pos.segment());
+            int offset = pos.offset();
+            int length = offset + HEADER_BYTES <= segmentBytes ? buf.getInt(offset) : 0;
+            if (length > 0 && offset + HEADER_BYTES + length <= segmentBytes) {
+                byte[] payload = new byte[length];
+                buf.get(offset + HEADER_BYTES, payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() == buf.getInt(offset + 4)) {
+                    return Optional.of(new Raw(payload, new JournalPosition(pos.segment(), offset + HEADER_BYTES + length)));
+                }
+                log.warn("journal segment {} is corrupt at offset {}, skipping the rest of it", pos.segment(), offset);
+            }
+            // end of this segment's data: continue with the next one, if the writer has moved on
+            Long next = segments.higher(pos.segment());
+            if (next == null) {
+                return Optional.empty();
+            }
+            pos = new JournalPosition(next, 0);
+        }
+    }
+
+    public synchronized JournalPosition checkpoint() {
+        return checkpoint;
+    }
+
+    // Marks everything before `upTo` as safely in Postgres
+    public synchronized void commit(JournalPosition upTo) {
+        if (upTo.compareTo(checkpoint) <= 0) {
+            return;
+        }
+        checkpoint = upTo;
+        writeCheckpoint();
+        // segments strictly before the checkpoint's segment are fully replayed
+        List<Long> replayed = new ArrayList<>(segments.headSet(checkpoint.segment(), false));
+        for (int i = 0; i < replayed.size() - retainSegments; i++) {
+            deleteSegment(replayed.get(i));
+        }
+    }
+
+    public synchronized boolean hasPending() {
+        return locate(checkpoint).isPresent();
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long droppedSegments() {
+        return droppedSegments;
+    }
+
+    public synchronized void close() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (var files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                .filter(n -> n.endsWith(SUFFIX))
+                .forEach(n -> segments.add(Long.parseLong(n.substring(0, n.length() - SUFFIX.length()))));
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            activeSegment = segments.last();
+            active = map(activeSegment);
+            writeOffset = scanEnd(active);
+            // zero whatever a torn write left behind so it can never be mistaken for a record
+            for (int i = writeOffset; i < segmentBytes; i++) {
+                if (active.get(i) != 0) {
+                    active.put(i, (byte) 0);
+                }
+            }
+        }
+        checkpoint = readCheckpoint().orElse(new JournalPosition(segments.first(), 0));
+        if (checkpoint.segment() < segments.first()) {
+            checkpoint = new JournalPosition(segments.first(), 0);
+        }
+    }
+
+    private int scanEnd(ByteBuffer buf) {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = buf.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buf.get(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buf.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private void roll() {
+        active.force();
+        openSegment(activeSegment + 1);
+        while (segments.size() > maxSegments) {
+            long oldest = segments.first();
+            if (checkpoint.segment() <= oldest) {
+                droppedSegments++;
+                checkpoint = new JournalPosition(segments.higher(oldest), 0);
+                writeCheckpoint();
+                log.error("journal exceeded {} segments, dropped unreplayed segment {}", maxSegments, oldest);
+            }
+            deleteSegment(oldest);
+        }
+    }
+
+    private void openSegment(long segment) {
+        try {
+            active = map(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + segment, e);
+        }
+        activeSegment = segment;
+        writeOffset = 0;
+        segments.add(segment);
+    }
+
+    private MappedByteBuffer map(long segment) throws IOException {
+        try (FileChannel ch = FileChannel.open(segmentPath(segment),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private ByteBuffer mapForRead(long segment) {
+        if (segment == activeSegment) {
+            return active;
+        }
+        if (readSegment != segment) {
+            try (FileChannel ch = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                readBuffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), segmentBytes));
+                readSegment = segment;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read journal segment " + segment, e);
+            }
+        }
+        return readBuffer;
+    }
+
+    private void deleteSegment(long segment) {
+        segments.remove(segment);
+        if (readSegment == segment) {
+            readSegment = -1;
+            readBuffer = null;
+        }
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            log.warn("could not delete journal segment {}", segment, e);
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return dir.resolve(String.format("%020d%s", segment, SUFFIX));
+    }
+
+    private Optional<JournalPosition> readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return Optional.of(new JournalPosition(in.readLong(), in.readInt()));
+        }
+    }
+
+    private void writeCheckpoint() {
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.allocate(12).putLong(checkpoint.segment()).putInt(checkpoint.offset()).flip();
+                ch.write(buf);
+                if (fsync) {
+                    ch.force(true);
+                }
+            }
+            Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write journal checkpoint", e);
+        }
+    }
+
+    private byte[] encode(JournalRecord record) {
+        scratch.reset();
+        try (DataOutputStream out = new DataOutputStream(scratch)) {
+            out.writeByte(VERSION);
+            out.writeInt(record.ticks().size());
+            for (PriceTick t : record.ticks()) {
+                out.writeUTF(t.source());
+                writeString(out, t.symbol());
+                writeString(out, t.coinId());
+                writeString(out, t.name());
+                writeString(out, t.vsCurrency());
+                out.writeLong(t.priceFp());
+                out.writeByte(t.priceScale());
+                writeDouble(out, t.marketCap());
+                writeDouble(out, t.pctChange24h());
+                out.writeLong(t.tsBucket().toEpochMilli());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return scratch.toByteArray();
+    }
+
+    private static JournalRecord decode(byte[] payload, JournalPosition next) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new UnreadableRecordException("Unsupported journal record version " + version + " (expected " + VERSION + ")", next);
+            }
+            int count = in.readInt();
+            List<PriceTick> ticks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String source = in.readUTF();
+                String symbol = readString(in);
+                String coinId = readString(in);
+                String name = readString(in);
+                String vsCurrency = readString(in);
+                long priceFp = in.readLong();
+                int priceScale = in.readByte();
+                ticks.add(new PriceTick(source, symbol, coinId, name, vsCurrency, priceFp, priceScale,
+                    readDouble(in), readDouble(in), Instant.ofEpochMilli(in.readLong())));
+            }
+            return new JournalRecord(ticks);
+        } catch (IOException e) {
+            throw new UnreadableRecordException("Truncated journal record: " + e, next);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static Double readDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    public record Entry(JournalRecord record, JournalPosition next) {}
+
+    private record Raw(byte[] payload, JournalPosition next) {}
+
+    // A record whose CRC matches but whose payload this version cannot decode
+    public static class UnreadableRecordException extends IllegalStateException {
+
+        private final JournalPosition next;
+
+        UnreadableRecordException(String message, JournalPosition next) {
+            super(message);
+            this.next = next;
+        }
+
+        // Position right after the record, to commit past it
+        public JournalPosition next() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.priceingestor.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record Candle(
+    String source,
+    String symbol,
+    String vsCurrency,
+    String resolution,
+    Instant bucketStart,
+    BigDecimal open,
+    BigDecimal high,
+    BigDecimal low,
+    BigDecimal close,
+    int samples
+) {}
@@ -0,0 +1,35 @@
+package com.example.priceingestor.model;
+
+import java.time.Duration;
+
+// Candle levels in rollup order; each level is built from the one before it (M5 from raw prices)
+public enum CandleResolution {
+    M5("5m", Duration.ofMinutes(5)),
+    H1("1h", Duration.ofHours(1)),
+    D1("1d", Duration.ofDays(1));
+
+    private final String label;
+    private final Duration step;
+
+    CandleResolution(String label, Duration step) {
+        this.label = label;
+        this.step = step;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public Duration step() {
+        return step;
+    }
+
+    public static CandleResolution fromLabel(String label) {
+        for (CandleResolution r : values()) {
+            if (r.label.equals(label)) {
+                return r;
+            }
+        }
+        throw new IllegalArgumentException("Unknown candle resolution: " + label);
+    }
+}
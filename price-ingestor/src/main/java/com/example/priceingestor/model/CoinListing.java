@@ -0,0 +1,8 @@
+package com.example.priceingestor.model;
+
+// CoinGecko /coins/list entry
+public record CoinListing(
+    String id,
+    String symbol,
+    String name
+) {}
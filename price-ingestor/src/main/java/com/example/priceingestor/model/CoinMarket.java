@@ -6,5 +6,6 @@ public record CoinMarket(
     String name,
     Double current_price,
     Double market_cap,
-    Double price_change_percentage_24h
+    Double price_change_percentage_24h,
+    Double total_volume
 ) {}
@@ -0,0 +1,11 @@
+package com.example.priceingestor.model;
+
+// One row of the coins table: the integer key prices rows reference, and the metadata behind it.
+// priceScale is the scale of the coin's prices.price_fp values (null until the coin is first written).
+public record CoinRef(
+    int coinKey,
+    String coinId,
+    String symbol,
+    String name,
+    Integer priceScale
+) {}
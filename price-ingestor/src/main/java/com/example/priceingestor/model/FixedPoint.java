@@ -0,0 +1,253 @@
+package com.example.priceingestor.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Prices as fixed-point decimals: an unscaled long plus a decimal scale, value = unscaled / 10^scale.
+// Exact for up to 18 significant digits and MAX_SCALE decimals (what prices.price NUMERIC(38,12)
+// keeps), compared and rescaled without allocating. NULL stands for a missing price.
+// Values are normalized (no trailing zero decimals), so equal prices have equal pairs.
+public final class FixedPoint {
+
+    public static final long NULL = Long.MIN_VALUE;
+    public static final int MAX_SCALE = 12;
+
+    // Digits left above a coin's first observed price when its storage scale is picked, so it can
+    // grow 1000x (or be quoted in a weaker currency) before its rows fall back to NUMERIC
+    private static final int HEADROOM_DIGITS = 3;
+    private static final int MAX_DIGITS = 18;
+
+    private static final long[] POW10 = new long[MAX_DIGITS + 1];
+    private static final double[] POW10_DOUBLE = new double[MAX_DIGITS + 1];
+
+    static {
+        long p = 1;
+        for (int i = 0; i <= MAX_DIGITS; i++) {
+            POW10[i] = p;
+            POW10_DOUBLE[i] = p;
+            p *= 10;
+        }
+    }
+
+    private FixedPoint() {}
+
+    // Parses a JSON number (sign, digits, fraction, exponent) from buf[off, off + len) at `scale`,
+    // rounding extra decimals half-even. NULL if the text is not a number or does not fit.
+    public static long parse(char[] buf, int off, int len, int scale) {
+        int i = off;
+        int end = off + len;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long m = 0;
+        int kept = 0;
+        int exp10 = 0;
+        // digits beyond MAX_DIGITS only matter for rounding: the first one and whether any other is non-zero
+        int firstDropped = -1;
+        boolean sticky = false;
+        boolean digits = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = buf[i];
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                int d = c - '0';
+                if (kept < MAX_DIGITS) {
+                    m = m * 10 + d;
+                    if (m != 0) {
+                        kept++;
+                    }
+                    if (fraction) {
+                        exp10--;
+                    }
+                } else {
+                    if (!fraction) {
+                        exp10++;
+                    }
+                    if (firstDropped < 0) {
+                        firstDropped = d;
+                    } else {
+                        sticky |= d != 0;
+                    }
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if ((c == 'e' || c == 'E') && digits) {
+                int exponent = exponent(buf, i + 1, end);
+                if (exponent == Integer.MIN_VALUE) {
+                    return NULL;
+                }
+                exp10 += exponent;
+                break;
+            } else {
+                return NULL;
+            }
+        }
+        if (!digits) {
+            return NULL;
+        }
+
+        long v;
+        int shift = exp10 + scale;
+        if (shift == 0) {
+            v = roundHalfEven(m, firstDropped < 0 ? 0 : firstDropped, 10, sticky);
+        } else if (shift > 0) {
+            if (firstDropped >= 0 || shift > MAX_DIGITS || m > Long.MAX_VALUE / POW10[shift]) {
+                return m == 0 ? 0 : NULL;
+            }
+            v = m * POW10[shift];
+        } else if (-shift > MAX_DIGITS) {
+            // m < 10^18, less than half a unit
+            v = 0;
+        } else {
+            long unit = POW10[-shift];
+            v = roundHalfEven(m / unit, m % unit, unit, firstDropped > 0 || sticky);
+        }
+        return negative ? -v : v;
+    }
+
+    public static long parse(String text, int scale) {
+        return parse(text.toCharArray(), 0, text.length(), scale);
+    }
+
+    // The smallest scale that still holds `unscaled` exactly (trailing zero decimals dropped)
+    public static int normalScale(long unscaled, int scale) {
+        if (unscaled == NULL) {
+            return 0;
+        }
+        while (scale > 0 && unscaled % 10 == 0) {
+            unscaled /= 10;
+            scale--;
+        }
+        return scale;
+    }
+
+    // `unscaled` moved from scale `from` to `to`, rounding half-even; NULL if it does not fit
+    public static long rescale(long unscaled, int from, int to) {
+        if (unscaled == NULL || from == to) {
+            return unscaled;
+        }
+        if (to > from) {
+            int up = to - from;
+            if (up > MAX_DIGITS || Math.abs(unscaled) > Long.MAX_VALUE / POW10[up]) {
+                return unscaled == 0 ? 0 : NULL;
+            }
+            return unscaled * POW10[up];
+        }
+        int down = from - to;
+        if (down > MAX_DIGITS) {
+            return 0;
+        }
+        long unit = POW10[down];
+        long q = roundHalfEven(Math.abs(unscaled) / unit, Math.abs(unscaled) % unit, unit, false);
+        return unscaled < 0 ? -q : q;
+    }
+
+    // Like rescale, but NULL unless the value survives unchanged
+    public static long rescaleExact(long unscaled, int from, int to) {
+        long v = rescale(unscaled, from, to);
+        return v == NULL || rescale(v, to, from) != unscaled ? NULL : v;
+    }
+
+    // Storage scale for a coin first seen at this price: as many decimals as fit (up to MAX_SCALE)
+    // while leaving HEADROOM_DIGITS above its integer part
+    public static int storageScale(long unscaled, int scale) {
+        long integer = unscaled == NULL ? 0 : Math.abs(unscaled) / POW10[scale];
+        int integerDigits = 0;
+        while (integer > 0) {
+            integer /= 10;
+            integerDigits++;
+        }
+        return Math.max(0, Math.min(MAX_SCALE, MAX_DIGITS - HEADROOM_DIGITS - integerDigits));
+    }
+
+    public static double toDouble(long unscaled, int scale) {
+        return unscaled == NULL ? Double.NaN : unscaled / POW10_DOUBLE[scale];
+    }
+
+    public static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return unscaled == NULL ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    // For values that arrive as doubles (sources decoded through databind, the stream): the shortest
+    // decimal that reads back as the same double, which is what upstream sent for up to 15 digits
+    public static long unscaledOf(Double value) {
+        BigDecimal d = decimal(value);
+        return d == null ? NULL : d.unscaledValue().longValue();
+    }
+
+    public static int scaleOf(Double value) {
+        BigDecimal d = decimal(value);
+        return d == null ? 0 : d.scale();
+    }
+
+    public static long unscaledOf(BigDecimal value) {
+        BigDecimal d = normalize(value);
+        return d == null ? NULL : d.unscaledValue().longValue();
+    }
+
+    public static int scaleOf(BigDecimal value) {
+        BigDecimal d = normalize(value);
+        return d == null ? 0 : d.scale();
+    }
+
+    private static BigDecimal decimal(Double value) {
+        if (value == null || value.isNaN() || value.isInfinite()) {
+            return null;
+        }
+        return normalize(BigDecimal.valueOf(value));
+    }
+
+    // At most MAX_SCALE decimals and MAX_DIGITS digits (dropping decimals first), no trailing zeros
+    private static BigDecimal normalize(BigDecimal value) {
+        if (value == null) {
+            return null;
+        }
+        int scale = Math.max(0, Math.min(MAX_SCALE, value.stripTrailingZeros().scale()));
+        BigDecimal d = value.setScale(scale, RoundingMode.HALF_EVEN);
+        if (d.precision() > MAX_DIGITS) {
+            scale -= d.precision() - MAX_DIGITS;
+            if (scale < 0) {
+                return null;
+            }
+            d = value.setScale(scale, RoundingMode.HALF_EVEN);
+        }
+        if (d.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        d = d.stripTrailingZeros();
+        return d.scale() < 0 ? d.setScale(0) : d;
+    }
+
+    private static long roundHalfEven(long q, long r, long unit, boolean aboveHalf) {
+        long twice = r * 2;
+        // r < unit <= 10^18, so 2r fits in a long
+        if (twice > unit || (twice == unit && (aboveHalf || (q & 1) == 1))) {
+            return q + 1;
+        }
+        return q;
+    }
+
+    // Integer.MIN_VALUE if malformed; clamped far beyond any scale that could matter
+    private static int exponent(char[] buf, int i, int end) {
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            return Integer.MIN_VALUE;
+        }
+        int e = 0;
+        for (; i < end; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') {
+                return Integer.MIN_VALUE;
+            }
+            e = Math.min(e * 10 + (c - '0'), 1000);
+        }
+        return negative ? -e : e;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.priceingestor.model;
+
+import java.time.Instant;
+
+// Latest stored observation of one (source, symbol, vs_currency); the price is fixed-point like PriceTick's
+public record LastPrice(
+    String source,
+    String symbol,
+    String vsCurrency,
+    long priceFp,
+    int priceScale,
+    Double marketCap,
+    Double pctChange24h,
+    Instant tsBucket
+) {
+
+    public Double price() {
+        return priceFp == FixedPoint.NULL ? null : FixedPoint.toDouble(priceFp, priceScale);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.priceingestor.model;
+
+import java.util.List;
+
+// CoinGecko /coins/{id}/market_chart/range: each point is [unix millis, value]
+public record MarketChart(
+    List<double[]> prices,
+    List<double[]> market_caps,
+    List<double[]> total_volumes
+) {}
@@ -0,0 +1,19 @@
+package com.example.priceingestor.model;
+
+import java.util.Map;
+
+// One element of CoinPaprika's /tickers response; quotes are keyed by upper-case currency (USD, EUR, ...)
+public record PaprikaTicker(
+    String id,
+    String name,
+    String symbol,
+    Integer rank,
+    Map<String, Quote> quotes
+) {
+
+    public record Quote(
+        Double price,
+        Double market_cap,
+        Double percent_change_24h
+    ) {}
+}
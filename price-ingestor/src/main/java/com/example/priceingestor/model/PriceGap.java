@@ -0,0 +1,17 @@
+package com.example.priceingestor.model;
+
+import java.time.Instant;
+
+// A run of missing buckets for one symbol, bounded by observed rows on both sides
+public record PriceGap(
+    String source,
+    String symbol,
+    String vsCurrency,
+    String coinId,
+    String name,
+    Instant gapStart,
+    Instant gapEnd,
+    int missingBuckets,
+    String status,
+    int attempts
+) {}
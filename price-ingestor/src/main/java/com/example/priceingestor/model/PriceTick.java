@@ -0,0 +1,43 @@
+package com.example.priceingestor.model;
+
+import java.time.Instant;
+
+// One row bound for prices: a price observation already stamped with its source and ts_bucket.
+// The price is fixed-point (see FixedPoint): priceFp / 10^priceScale, FixedPoint.NULL if missing.
+public record PriceTick(
+    String source,
+    String symbol,
+    String coinId,
+    String name,
+    String vsCurrency,
+    long priceFp,
+    int priceScale,
+    Double marketCap,
+    Double pctChange24h,
+    Instant tsBucket
+) {
+
+    public PriceTick {
+        int normal = FixedPoint.normalScale(priceFp, priceScale);
+        priceFp = FixedPoint.rescale(priceFp, priceScale, normal);
+        priceScale = normal;
+    }
+
+    // For sources that decode prices as doubles
+    public PriceTick(
+        String source, String symbol, String coinId, String name, String vsCurrency,
+        Double price, Double marketCap, Double pctChange24h, Instant tsBucket
+    ) {
+        this(source, symbol, coinId, name, vsCurrency, FixedPoint.unscaledOf(price), FixedPoint.scaleOf(price),
+            marketCap, pctChange24h, tsBucket);
+    }
+
+    public boolean hasPrice() {
+        return priceFp != FixedPoint.NULL;
+    }
+
+    // Boxed, for logs and tests; the write path uses priceFp/priceScale
+    public Double price() {
+        return hasPrice() ? FixedPoint.toDouble(priceFp, priceScale) : null;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.priceingestor.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Recorded upstream responses, for offline replay.
+//
+// Bodies go into NNNNNN.dat segments, each deflated on its own so any one can be read back
+// without touching the rest; a segment rolls once it passes segmentBytes. Alongside every data
+// file is an NNNNNN.idx file with one entry per body:
+//   [UTF request key][long offset ms since recording start][long latency ms][short status]
+//   [long position in .dat][int compressed length][int raw length]
+// The index is flushed after every entry, so a recording cut short by a crash stays readable up
+// to its last complete entry. submit() hands a body to a single writer thread, so callers on an
+// event loop never wait on the deflate or the disk; entries keep the order and the offset at which
+// they were submitted, and close() writes whatever is still queued.
+public class PayloadStore implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PayloadStore.class);
+
+    private static final String DATA = ".dat";
+    private static final String INDEX = ".idx";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long startNanos = System.nanoTime();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] chunk = new byte[64 * 1024];
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "payload-store");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int segment;
+    private OutputStream data;
+    private DataOutputStream index;
+    private long dataPosition;
+
+    public PayloadStore(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(dir);
+            // never append to an earlier recording's segments
+            segment = entries(dir).stream().mapToInt(Entry::segment).max().orElse(0);
+            roll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open payload store in " + dir, e);
+        }
+    }
+
+    // Queues the body for the writer thread and returns at once; `body` must not change afterwards
+    public void submit(String key, long latencyMillis, int status, byte[] body) {
+        long offsetMillis = offsetMillis();
+        try {
+            writer.execute(() -> {
+                try {
+                    append(key, offsetMillis, latencyMillis, status, body);
+                } catch (UncheckedIOException e) {
+                    log.warn("dropped recorded payload {}: {}", key, e.getCause().toString());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("payload store closed; not recording {}", key);
+        }
+    }
+
+    public void append(String key, long latencyMillis, int status, byte[] body) {
+        append(key, offsetMillis(), latencyMillis, status, body);
+    }
+
+    private synchronized void append(String key, long offsetMillis, long latencyMillis, int status, byte[] body) {
+        try {
+            byte[] compressed = deflate(body);
+            if (dataPosition > 0 && dataPosition + compressed.length > segmentBytes) {
+                roll();
+            }
+            data.write(compressed);
+            data.flush();
+            index.writeUTF(key);
+            index.writeLong(offsetMillis);
+            index.writeLong(latencyMillis);
+            index.writeShort(status);
+            index.writeLong(dataPosition);
+            index.writeInt(compressed.length);
+            index.writeInt(body.length);
+            index.flush();
+            dataPosition += compressed.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to payload store in " + dir, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("payload store closed with recorded payloads still queued");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeFiles();
+    }
+
+    private synchronized void closeFiles() {
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private long offsetMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // Every indexed body in the directory, in recording order
+    public static List<Entry> entries(Path dir) throws IOException {
+        List<Path> indexes;
+        try (Stream<Path> files = Files.list(dir)) {
+            indexes = files.filter(p -> p.getFileName().toString().endsWith(INDEX)).sorted().toList();
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path idx : indexes) {
+            String name = idx.getFileName().toString();
+            int seg = Integer.parseInt(name.substring(0, name.length() - INDEX.length()));
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(idx)))) {
+                while (true) {
+                    try {
+                        entries.add(new Entry(seg, in.readUTF(), in.readLong(), in.readLong(), in.readShort(),
+                            in.readLong(), in.readInt(), in.readInt()));
+                    } catch (EOFException end) {
+                        break;
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    public static byte[] read(Path dir, Entry entry) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(entry.compressedLength());
+        try (FileChannel ch = FileChannel.open(dir.resolve(fileName(entry.segment(), DATA)), StandardOpenOption.READ)) {
+            while (compressed.hasRemaining()) {
+                if (ch.read(compressed, entry.position() + compressed.position()) < 0) {
+                    throw new EOFException("Truncated payload segment " + entry.segment());
+                }
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            byte[] body = new byte[entry.rawLength()];
+            int n = 0;
+            while (n < body.length && !inflater.finished()) {
+                n += inflater.inflate(body, n, body.length - n);
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt payload in segment " + entry.segment(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private byte[] deflate(byte[] body) {
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private void roll() throws IOException {
+        closeSegment();
+        segment++;
+        data = new BufferedOutputStream(Files.newOutputStream(dir.resolve(fileName(segment, DATA))));
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(fileName(segment, INDEX)))));
+        dataPosition = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        if (data != null) {
+            data.close();
+            index.close();
+            data = null;
+            index = null;
+        }
+    }
+
+    private static String fileName(int segment, String suffix) {
+        return String.format("%06d%s", segment, suffix);
+    }
+
+    public record Entry(
+        int segment,
+        String key,
+        long offsetMillis,
+        long latencyMillis,
+        int status,
+        long position,
+        int compressedLength,
+        int rawLength
+    ) {}
+}
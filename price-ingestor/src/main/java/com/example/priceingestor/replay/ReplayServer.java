@@ -0,0 +1,162 @@
+package com.example.priceingestor.replay;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+// Local stand-in for the upstream API that serves a PayloadStore recording back.
+//
+// Requests are matched on path + query exactly as recorded (so point ingestor.base-url at this
+// server with the same path prefix the recording used). Each key replays its recorded responses
+// in order and, with loop on, starts over when they run out. With speed > 0 a response is held
+// back until its recorded offset / speed since the server started, and for at least its recorded
+// latency / speed, so speed=1 reproduces the original pacing and speed=100 runs a hundred times
+// faster; speed=0 serves everything as fast as possible.
+// Cycles fed from a sped-up recording are stamped on the replay clock (see replayTime), so a
+// benchmark at speed=100 and period-ms=600 still writes one distinct ts_bucket minute per cycle.
+@Component
+@ConditionalOnProperty(name = "ingestor.replay.enabled", havingValue = "true")
+public class ReplayServer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayServer.class);
+
+    private final Path dir;
+    private final int port;
+    private final double speed;
+    private final boolean loop;
+    private final Map<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+
+    private Map<String, List<PayloadStore.Entry>> byKey;
+    private long spanMillis;
+    private long startNanos;
+    private long startMillis;
+    private DisposableServer server;
+
+    public ReplayServer(
+        @Value("${ingestor.replay.dir}") String dir,
+        @Value("${ingestor.replay.port}") int port,
+        @Value("${ingestor.replay.speed}") double speed,
+        @Value("${ingestor.replay.loop}") boolean loop
+    ) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("ingestor.replay.speed must be >= 0: " + speed);
+        }
+        this.dir = Path.of(dir);
+        this.port = port;
+        this.speed = speed;
+        this.loop = loop;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        List<PayloadStore.Entry> entries;
+        try {
+            entries = PayloadStore.entries(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read recording in " + dir, e);
+        }
+        Map<String, List<PayloadStore.Entry>> grouped = new LinkedHashMap<>();
+        entries.forEach(e -> grouped.computeIfAbsent(e.key(), k -> new ArrayList<>()).add(e));
+        byKey = grouped;
+        spanMillis = entries.stream().mapToLong(PayloadStore.Entry::offsetMillis).max().orElse(0) + 1;
+        startNanos = System.nanoTime();
+        startMillis = System.currentTimeMillis();
+        server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(port)
+            .handle(this::serve)
+            .bindNow();
+        log.info("replaying {} responses for {} requests from {} on port {} at speed {}",
+            entries.size(), grouped.size(), dir, server.port(), speed);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    // Up before the ingestion schedulers, which would otherwise hit a closed port on their first cycle
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    // Where wall-clock time `at` falls in the recording: the server's start plus the elapsed time
+    // times speed. At speed 0 (no pacing) there is no replay clock and `at` is returned as is.
+    public Instant replayTime(Instant at) {
+        if (speed == 0) {
+            return at;
+        }
+        return Instant.ofEpochMilli(startMillis + (long) ((at.toEpochMilli() - startMillis) * speed));
+    }
+
+    private Mono<Void> serve(HttpServerRequest req, HttpServerResponse res) {
+        List<PayloadStore.Entry> recorded = byKey.get(req.uri());
+        if (recorded == null) {
+            return res.status(404).sendString(Mono.just("not in recording: " + req.uri())).then();
+        }
+        long n = cursors.computeIfAbsent(req.uri(), k -> new AtomicLong()).getAndIncrement();
+        long pass = n / recorded.size();
+        if (pass > 0 && !loop) {
+            return res.status(410).sendString(Mono.just("recording exhausted: " + req.uri())).then();
+        }
+        PayloadStore.Entry entry = recorded.get((int) (n % recorded.size()));
+
+        Duration wait = Duration.ZERO;
+        if (speed > 0) {
+            long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+            long due = (long) ((pass * spanMillis + entry.offsetMillis()) / speed);
+            wait = Duration.ofMillis(Math.max((long) (entry.latencyMillis() / speed), due - elapsed));
+        }
+        Mono<byte[]> body = Mono.delay(wait)
+            .publishOn(Schedulers.boundedElastic())
+            .map(tick -> {
+                try {
+                    return PayloadStore.read(dir, entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        return res.status(entry.status())
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .sendByteArray(body)
+            .then();
+    }
+}
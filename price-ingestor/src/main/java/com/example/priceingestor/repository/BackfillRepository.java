@@ -0,0 +1,52 @@
+package com.example.priceingestor.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class BackfillRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public BackfillRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // window_start -> window_end of every checkpointed window; a window cut short by an earlier `to`
+    // keeps its shorter window_end until a later run fetches the rest of it
+    public Map<Instant, Instant> completedWindows(String source, String coinId, String vsCurrency) {
+        String sql = "SELECT window_start, window_end FROM backfill_checkpoints " +
+            "WHERE source = :source AND coin_id = :coin_id AND vs_currency = :vs_currency";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("coin_id", coinId)
+            .addValue("vs_currency", vsCurrency);
+
+        Map<Instant, Instant> windows = new HashMap<>();
+        jdbc.query(sql, params, rs -> {
+            windows.put(rs.getTimestamp("window_start").toInstant(), rs.getTimestamp("window_end").toInstant());
+        });
+        return windows;
+    }
+
+    public void markDone(String source, String coinId, String vsCurrency, Instant windowStart, Instant windowEnd, int rows) {
+        String sql = "INSERT INTO backfill_checkpoints (source, coin_id, vs_currency, window_start, window_end, rows_written) " +
+            "VALUES (:source, :coin_id, :vs_currency, :window_start, :window_end, :rows_written) " +
+            "ON CONFLICT (source, coin_id, vs_currency, window_start) DO UPDATE SET " +
+            "window_end = EXCLUDED.window_end, rows_written = EXCLUDED.rows_written, completed_at = now()";
+
+        jdbc.update(sql, new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("coin_id", coinId)
+            .addValue("vs_currency", vsCurrency)
+            .addValue("window_start", Timestamp.from(windowStart))
+            .addValue("window_end", Timestamp.from(windowEnd))
+            .addValue("rows_written", rows));
+    }
+}
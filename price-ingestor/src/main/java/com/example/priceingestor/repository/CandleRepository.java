@@ -0,0 +1,122 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.Candle;
+import com.example.priceingestor.model.CandleResolution;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class CandleRepository {
+
+    private static final String ORIGIN = "TIMESTAMPTZ '2000-01-01 00:00:00+00'";
+
+    // 5m candles straight from the minute rows in `rows` (see PriceSchema); also run over R2DBC,
+    // see R2dbcPriceRepository
+    static String rollupFromPrices(String rows) {
+        return
+        "INSERT INTO price_candles (source, symbol, vs_currency, resolution, bucket_start, open, high, low, close, samples) " +
+        "SELECT source, symbol, vs_currency, :resolution, bucket_start, " +
+        "  (array_agg(price ORDER BY ts_bucket))[1], max(price), min(price), " +
+        "  (array_agg(price ORDER BY ts_bucket DESC))[1], count(*) " +
+        "FROM (SELECT p.source, p.symbol, p.vs_currency, " + PriceStorage.VALUE + " AS price, p.ts_bucket, " +
+        "        date_bin(CAST(:step AS interval), p.ts_bucket, " + ORIGIN + ") AS bucket_start " +
+        "      FROM " + rows + " p LEFT JOIN coins c ON c.coin_key = p.coin_key " +
+        "      WHERE p.source = :source AND p.vs_currency = :vs_currency AND p.symbol IN (:symbols) " +
+        "        AND p.ts_bucket >= :from AND p.ts_bucket < :to) p " +
+        "GROUP BY source, symbol, vs_currency, bucket_start " +
+        "ON CONFLICT (source, symbol, vs_currency, resolution, bucket_start) DO UPDATE SET " +
+        "  open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low, " +
+        "  close = EXCLUDED.close, samples = EXCLUDED.samples";
+    }
+
+    // Coarser candles from the next finer level
+    static final String ROLLUP_FROM_CANDLES =
+        "INSERT INTO price_candles (source, symbol, vs_currency, resolution, bucket_start, open, high, low, close, samples) " +
+        "SELECT source, symbol, vs_currency, :resolution, bucket_start, " +
+        "  (array_agg(open ORDER BY child_start))[1], max(high), min(low), " +
+        "  (array_agg(close ORDER BY child_start DESC))[1], sum(samples) " +
+        "FROM (SELECT source, symbol, vs_currency, open, high, low, close, samples, bucket_start AS child_start, " +
+        "        date_bin(CAST(:step AS interval), bucket_start, " + ORIGIN + ") AS bucket_start " +
+        "      FROM price_candles " +
+        "      WHERE source = :source AND vs_currency = :vs_currency AND resolution = :child AND symbol IN (:symbols) " +
+        "        AND bucket_start >= :from AND bucket_start < :to) c " +
+        "GROUP BY source, symbol, vs_currency, bucket_start " +
+        "ON CONFLICT (source, symbol, vs_currency, resolution, bucket_start) DO UPDATE SET " +
+        "  open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low, " +
+        "  close = EXCLUDED.close, samples = EXCLUDED.samples";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    private final String rollupFromPrices;
+
+    public CandleRepository(NamedParameterJdbcTemplate jdbc, @Value("${ingestor.prices-schema}") String schema) {
+        this.jdbc = jdbc;
+        this.rollupFromPrices = rollupFromPrices(PriceSchema.parse(schema).rows());
+    }
+
+    // Recomputes every candle of this resolution touching [from, to) from the level below.
+    // Rebuilding whole candles (instead of adding deltas) keeps late or replayed buckets exact.
+    public int refresh(
+        CandleResolution resolution, String source, String vsCurrency, Collection<String> symbols, Instant from, Instant to
+    ) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("resolution", resolution.label())
+            .addValue("step", resolution.step().toSeconds() + " seconds")
+            .addValue("source", source)
+            .addValue("vs_currency", vsCurrency)
+            .addValue("symbols", symbols)
+            .addValue("from", Timestamp.from(floor(from, resolution)))
+            .addValue("to", Timestamp.from(floor(to, resolution).plus(resolution.step())));
+
+        int ordinal = resolution.ordinal();
+        if (ordinal == 0) {
+            return jdbc.update(rollupFromPrices, params);
+        }
+        params.addValue("child", CandleResolution.values()[ordinal - 1].label());
+        return jdbc.update(ROLLUP_FROM_CANDLES, params);
+    }
+
+    public List<Candle> find(
+        String source, String symbol, String vsCurrency, CandleResolution resolution, Instant from, Instant to
+    ) {
+        String sql = "SELECT source, symbol, vs_currency, resolution, bucket_start, open, high, low, close, samples " +
+            "FROM price_candles " +
+            "WHERE source = :source AND symbol = :symbol AND vs_currency = :vs_currency AND resolution = :resolution " +
+            "AND bucket_start >= :from AND bucket_start < :to " +
+            "ORDER BY bucket_start";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("symbol", symbol)
+            .addValue("vs_currency", vsCurrency)
+            .addValue("resolution", resolution.label())
+            .addValue("from", Timestamp.from(from))
+            .addValue("to", Timestamp.from(to));
+
+        return jdbc.query(sql, params, (rs, rowNum) -> new Candle(
+            rs.getString("source"),
+            rs.getString("symbol"),
+            rs.getString("vs_currency"),
+            rs.getString("resolution"),
+            rs.getTimestamp("bucket_start").toInstant(),
+            rs.getBigDecimal("open"),
+            rs.getBigDecimal("high"),
+            rs.getBigDecimal("low"),
+            rs.getBigDecimal("close"),
+            rs.getInt("samples")
+        ));
+    }
+
+    // Candle starts are aligned to the epoch, which lines up with the 2000-01-01 date_bin origin
+    static Instant floor(Instant instant, CandleResolution resolution) {
+        long step = resolution.step().toSeconds();
+        long seconds = instant.getEpochSecond();
+        return Instant.ofEpochSecond(seconds - Math.floorMod(seconds, step));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.CoinListing;
+import com.example.priceingestor.model.CoinRef;
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// The coins table plus an in-process copy of it. Writers turn coin ids into coin_key through
+// keysFor(), which only touches the database for coins it has not seen yet, and the hot path reads
+// symbol and name from here instead of decoding them from every upstream response.
+// keysFor() also fixes each coin's price_scale the first time it writes one of its prices.
+// Upserts usually run inside a writer's batch transaction, so the cache only takes their rows once
+// that transaction commits: a rolled-back batch must not leave coin_keys behind that do not exist.
+// They lock coins rows in coin_id order, so concurrent batches and the daily replaceUniverse cannot
+// deadlock on each other.
+@Repository
+public class CoinRepository implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(CoinRepository.class);
+
+    private static final RowMapper<CoinRef> COIN = (rs, rowNum) -> new CoinRef(
+        rs.getInt("coin_key"),
+        rs.getString("coin_id"),
+        rs.getString("symbol"),
+        rs.getString("name"),
+        rs.getObject("price_scale", Integer.class)
+    );
+
+    private static final String COLUMNS = "coin_key, coin_id, symbol, name, price_scale";
+
+    // A coin's price_scale never changes once set: its price_fp values are only comparable at one scale
+    private static final String UPSERT = "INSERT INTO coins (coin_id, symbol, name, market_rank, price_scale) " +
+        "VALUES (:coin_id, :symbol, :name, :market_rank, :price_scale) " +
+        "ON CONFLICT (coin_id) DO UPDATE SET symbol = EXCLUDED.symbol, name = EXCLUDED.name, " +
+        "market_rank = COALESCE(EXCLUDED.market_rank, coins.market_rank), " +
+        "price_scale = COALESCE(coins.price_scale, EXCLUDED.price_scale)";
+
+    // Only a universe refresh moves updated_at, which lastRefresh() reads
+    private static final String UPSERT_REFRESHED = UPSERT + ", updated_at = now()";
+
+    private static final Comparator<CoinListing> LOCK_ORDER = Comparator.comparing(CoinListing::id);
+
+    // Keeps the IN list well under the driver's bind parameter limit
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final Map<String, CoinRef> byId = new ConcurrentHashMap<>();
+    private volatile List<String> universe = List.of();
+
+    public CoinRepository(NamedParameterJdbcTemplate jdbc, TransactionTemplate tx) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbc.query("SELECT " + COLUMNS + " FROM coins", COIN)
+            .forEach(c -> byId.put(c.coinId(), c));
+        universe = loadUniverse();
+        log.info("coin cache loaded {} coins, universe of {}", byId.size(), universe.size());
+    }
+
+    public Optional<CoinRef> find(String coinId) {
+        return Optional.ofNullable(byId.get(coinId));
+    }
+
+    // Coin ids in market_rank order, as of the last refresh
+    public List<String> universe() {
+        return universe;
+    }
+
+    public Optional<Instant> lastRefresh() {
+        Timestamp ts = jdbc.getJdbcTemplate()
+            .queryForObject("SELECT max(updated_at) FROM coins WHERE market_rank IS NOT NULL", Timestamp.class);
+        return Optional.ofNullable(ts).map(Timestamp::toInstant);
+    }
+
+    // coin_id -> coin_key for every tick; coins not cached yet, or without a price_scale yet, are
+    // upserted in one batch first, with the scale their largest price in the batch calls for
+    public Map<String, Integer> keysFor(Collection<PriceTick> ticks) {
+        Map<String, Integer> keys = new HashMap<>();
+        Map<String, CoinListing> missing = new LinkedHashMap<>();
+        Map<String, Integer> scales = new HashMap<>();
+        for (PriceTick t : ticks) {
+            CoinRef ref = byId.get(t.coinId());
+            if (ref != null && ref.priceScale() != null) {
+                keys.put(t.coinId(), ref.coinKey());
+                continue;
+            }
+            if (ref != null) {
+                missing.putIfAbsent(t.coinId(), new CoinListing(ref.coinId(), ref.symbol(), ref.name()));
+            } else {
+                missing.putIfAbsent(t.coinId(), new CoinListing(t.coinId(), t.symbol(), t.name() == null ? t.coinId() : t.name()));
+            }
+            if (t.hasPrice()) {
+                scales.merge(t.coinId(), FixedPoint.storageScale(t.priceFp(), t.priceScale()), Math::min);
+            }
+        }
+        if (!missing.isEmpty()) {
+            upsert(new ArrayList<>(missing.values()), Map.of(), scales).forEach(c -> keys.put(c.coinId(), c.coinKey()));
+        }
+        return keys;
+    }
+
+    // Replaces the ranked universe with `ranked` (in order) and refreshes the metadata of every coin in it
+    public void replaceUniverse(List<CoinListing> ranked) {
+        Map<String, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < ranked.size(); i++) {
+            ranks.putIfAbsent(ranked.get(i).id(), i + 1);
+        }
+        tx.executeWithoutResult(status -> {
+            jdbc.getJdbcTemplate().update("UPDATE coins SET market_rank = NULL WHERE market_rank IS NOT NULL");
+            upsert(ranked, ranks, Map.of());
+        });
+        universe = ranked.stream().map(CoinListing::id).distinct().toList();
+    }
+
+    // Picks up a refresh another replica wrote
+    public void reloadUniverse() {
+        universe = loadUniverse();
+    }
+
+    // Returns the rows as written; they reach the cache when the surrounding transaction commits.
+    // Non-empty `ranks` mark a universe refresh.
+    private List<CoinRef> upsert(List<CoinListing> coins, Map<String, Integer> ranks, Map<String, Integer> scales) {
+        List<CoinListing> ordered = new ArrayList<>(coins);
+        ordered.sort(LOCK_ORDER);
+        MapSqlParameterSource[] batch = ordered.stream().map(c -> new MapSqlParameterSource()
+            .addValue("coin_id", c.id())
+            .addValue("symbol", c.symbol())
+            .addValue("name", c.name())
+            .addValue("market_rank", ranks.get(c.id()), Types.INTEGER)
+            .addValue("price_scale", scales.get(c.id()), Types.SMALLINT)
+        ).toArray(MapSqlParameterSource[]::new);
+        jdbc.batchUpdate(ranks.isEmpty() ? UPSERT : UPSERT_REFRESHED, batch);
+
+        List<String> ids = coins.stream().map(CoinListing::id).distinct().toList();
+        List<CoinRef> written = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids.subList(from, Math.min(from + LOOKUP_CHUNK, ids.size())));
+            written.addAll(jdbc.query("SELECT " + COLUMNS + " FROM coins WHERE coin_id IN (:ids)", params, COIN));
+        }
+        cacheOnCommit(written);
+        return written;
+    }
+
+    private void cacheOnCommit(List<CoinRef> coins) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            coins.forEach(c -> byId.put(c.coinId(), c));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                coins.forEach(c -> byId.put(c.coinId(), c));
+            }
+        });
+    }
+
+    private List<String> loadUniverse() {
+        return jdbc.getJdbcTemplate()
+            .queryForList("SELECT coin_id FROM coins WHERE market_rank IS NOT NULL ORDER BY market_rank", String.class);
+    }
+}
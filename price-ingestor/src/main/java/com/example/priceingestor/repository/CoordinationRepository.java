@@ -0,0 +1,120 @@
+package com.example.priceingestor.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class CoordinationRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public CoordinationRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public void heartbeat(String memberId, Instant at) {
+        String sql = "INSERT INTO ingestor_members (member_id, heartbeat_at) VALUES (:member_id, :at) " +
+            "ON CONFLICT (member_id) DO UPDATE SET heartbeat_at = EXCLUDED.heartbeat_at";
+
+        jdbc.update(sql, new MapSqlParameterSource()
+            .addValue("member_id", memberId)
+            .addValue("at", Timestamp.from(at)));
+    }
+
+    // Sorted so every replica derives the same assignment from the same member list
+    public List<String> liveMembers(Instant since) {
+        String sql = "SELECT member_id FROM ingestor_members WHERE heartbeat_at >= :since ORDER BY member_id";
+
+        return jdbc.queryForList(sql, new MapSqlParameterSource("since", Timestamp.from(since)), String.class);
+    }
+
+    public void leave(String memberId) {
+        jdbc.update("DELETE FROM ingestor_members WHERE member_id = :member_id",
+            new MapSqlParameterSource("member_id", memberId));
+    }
+
+    // Returns the units this member won; units already claimed by anyone for the bucket are skipped
+    public List<String> claim(Instant bucket, String memberId, List<String> units) {
+        if (units.isEmpty()) {
+            return List.of();
+        }
+        String sql = "INSERT INTO ingestor_claims (ts_bucket, work_unit, member_id) " +
+            "VALUES (:ts_bucket, :work_unit, :member_id) ON CONFLICT DO NOTHING";
+
+        Timestamp tsBucket = Timestamp.from(bucket);
+        MapSqlParameterSource[] batch = units.stream().map(u -> new MapSqlParameterSource()
+            .addValue("ts_bucket", tsBucket)
+            .addValue("work_unit", u)
+            .addValue("member_id", memberId)
+        ).toArray(MapSqlParameterSource[]::new);
+
+        int[] counts = jdbc.batchUpdate(sql, batch);
+        List<String> won = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                won.add(units.get(i));
+            }
+        }
+        return won;
+    }
+
+    // Units of the bucket that are still unclaimed, or claimed but not completed by a member that is
+    // no longer live (no heartbeat since `liveSince`) or that claimed them before `staleBefore`
+    public List<String> claimLeftovers(Instant bucket, String memberId, List<String> units, Instant liveSince, Instant staleBefore) {
+        if (units.isEmpty()) {
+            return List.of();
+        }
+        String sql = "INSERT INTO ingestor_claims (ts_bucket, work_unit, member_id) " +
+            "VALUES (:ts_bucket, :work_unit, :member_id) " +
+            "ON CONFLICT (ts_bucket, work_unit) DO UPDATE SET member_id = EXCLUDED.member_id, claimed_at = now() " +
+            "WHERE ingestor_claims.completed_at IS NULL AND ingestor_claims.member_id <> EXCLUDED.member_id " +
+            "AND (ingestor_claims.claimed_at < :stale_before OR NOT EXISTS (" +
+            "  SELECT 1 FROM ingestor_members m WHERE m.member_id = ingestor_claims.member_id AND m.heartbeat_at >= :live_since))";
+
+        Timestamp tsBucket = Timestamp.from(bucket);
+        MapSqlParameterSource[] batch = units.stream().map(u -> new MapSqlParameterSource()
+            .addValue("ts_bucket", tsBucket)
+            .addValue("work_unit", u)
+            .addValue("member_id", memberId)
+            .addValue("stale_before", Timestamp.from(staleBefore))
+            .addValue("live_since", Timestamp.from(liveSince))
+        ).toArray(MapSqlParameterSource[]::new);
+
+        int[] counts = jdbc.batchUpdate(sql, batch);
+        List<String> won = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                won.add(units.get(i));
+            }
+        }
+        return won;
+    }
+
+    public void complete(Instant bucket, String memberId, List<String> units) {
+        jdbc.update("UPDATE ingestor_claims SET completed_at = now() " +
+            "WHERE ts_bucket = :ts_bucket AND member_id = :member_id AND work_unit IN (:units)", new MapSqlParameterSource()
+            .addValue("ts_bucket", Timestamp.from(bucket))
+            .addValue("member_id", memberId)
+            .addValue("units", units));
+    }
+
+    // Gives up this member's uncompleted claims, so any replica's leftover pass can take the units
+    public void release(Instant bucket, String memberId, List<String> units) {
+        jdbc.update("DELETE FROM ingestor_claims " +
+            "WHERE ts_bucket = :ts_bucket AND member_id = :member_id AND work_unit IN (:units) AND completed_at IS NULL",
+            new MapSqlParameterSource()
+                .addValue("ts_bucket", Timestamp.from(bucket))
+                .addValue("member_id", memberId)
+                .addValue("units", units));
+    }
+
+    public int pruneClaims(Instant before) {
+        return jdbc.update("DELETE FROM ingestor_claims WHERE ts_bucket < :before",
+            new MapSqlParameterSource("before", Timestamp.from(before)));
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Bulk loader for large snapshots and backfills.
+// Rows are streamed with binary COPY into a session-local staging table and then merged into
+// prices with one INSERT ... SELECT ... ON CONFLICT DO NOTHING, all in a single transaction.
+// market_cap and pct_change_24h are staged as float8, which is exactly what the batch path binds a
+// Double as, and the price as its exact decimal text (or price_fp, see PriceStorage), so both writers
+// store identical values. With the v2 schema the merge goes into prices_v2, swapping source, symbol
+// and vs_currency for their dictionary keys.
+@Repository
+public class CopyPriceWriter implements PriceWriter {
+
+    private static final String CREATE_STAGE =
+        "CREATE TEMP TABLE IF NOT EXISTS prices_stage (" +
+        "source TEXT, symbol TEXT, coin_key INT4, vs_currency TEXT, " +
+        "price TEXT, price_fp INT8, market_cap FLOAT8, pct_change_24h FLOAT8, ts_bucket TIMESTAMPTZ" +
+        ") ON COMMIT DELETE ROWS";
+
+    private static final String COPY_STAGE =
+        "COPY prices_stage (source, symbol, coin_key, vs_currency, price, price_fp, market_cap, pct_change_24h, ts_bucket) " +
+        "FROM STDIN (FORMAT binary)";
+
+    private static final String MERGE_STAGE =
+        "INSERT INTO prices (source, symbol, coin_key, vs_currency, price, price_fp, market_cap, pct_change_24h, ts_bucket) " +
+        "SELECT source, symbol, coin_key, vs_currency, CAST(price AS NUMERIC), price_fp, market_cap, pct_change_24h, ts_bucket " +
+        "FROM prices_stage " +
+        "ON CONFLICT DO NOTHING";
+
+    private static final String MERGE_STAGE_V2 =
+        "INSERT INTO prices_v2 (ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price, symbol_key) " +
+        "SELECT st.ts_bucket, st.price_fp, st.market_cap, st.pct_change_24h, st.coin_key, s.source_key, cu.currency_key, " +
+        "  CAST(st.price AS NUMERIC), sy.symbol_key " +
+        "FROM prices_stage st " +
+        "JOIN price_sources s ON s.source = st.source " +
+        "JOIN price_currencies cu ON cu.vs_currency = st.vs_currency " +
+        "JOIN price_symbols sy ON sy.symbol = st.symbol " +
+        "ON CONFLICT DO NOTHING";
+
+    // PGCOPY binary header: signature, flags, header extension length
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 9;
+    // timestamptz is sent as microseconds since 2000-01-01T00:00:00Z
+    private static final long PG_EPOCH_MICROS = Instant.parse("2000-01-01T00:00:00Z").getEpochSecond() * 1_000_000L;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final CoinRepository coins;
+    private final DimensionRepository dimensions;
+    private final PriceStorage storage;
+    private final PriceSchema schema;
+
+    public CopyPriceWriter(
+        NamedParameterJdbcTemplate jdbc,
+        TransactionTemplate tx,
+        CoinRepository coins,
+        DimensionRepository dimensions,
+        @Value("${ingestor.price-storage}") String storage,
+        @Value("${ingestor.prices-schema}") String schema
+    ) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.coins = coins;
+        this.dimensions = dimensions;
+        this.storage = new PriceStorage(storage, coins);
+        this.schema = PriceSchema.parse(schema);
+    }
+
+    @Override
+    public String name() {
+        return "copy";
+    }
+
+    @Override
+    public int write(List<PriceTick> ticks) {
+        if (ticks.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Integer> keys = coins.keysFor(ticks);
+        String merge = MERGE_STAGE;
+        if (schema == PriceSchema.V2) {
+            // the merge joins the dictionaries, so every source, symbol and currency in the batch needs its row first
+            for (PriceTick t : ticks) {
+                dimensions.sourceKey(t.source());
+                dimensions.symbolKey(t.symbol());
+                dimensions.currencyKey(t.vsCurrency());
+            }
+            merge = MERGE_STAGE_V2;
+        }
+        String mergeSql = merge;
+        Integer inserted = tx.execute(status -> jdbc.getJdbcTemplate().execute((ConnectionCallback<Integer>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute(CREATE_STAGE);
+            }
+            PGConnection pg = con.unwrap(PGConnection.class);
+            try (DataOutputStream out = new DataOutputStream(new PGCopyOutputStream(pg, COPY_STAGE, COPY_BUFFER_BYTES))) {
+                writeHeader(out);
+                for (PriceTick t : ticks) {
+                    writeRow(out, t, keys.get(t.coinId()), storage.fixedPrice(t));
+                }
+                out.writeShort(-1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("COPY into prices_stage failed", e);
+            }
+            try (Statement st = con.createStatement()) {
+                return st.executeUpdate(mergeSql);
+            }
+        }));
+        return inserted == null ? 0 : inserted;
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    private static void writeRow(DataOutputStream out, PriceTick t, int coinKey, long fixedPrice) throws IOException {
+        out.writeShort(FIELD_COUNT);
+        writeText(out, t.source());
+        writeText(out, t.symbol());
+        out.writeInt(4);
+        out.writeInt(coinKey);
+        writeText(out, t.vsCurrency());
+        BigDecimal price = PriceStorage.numericPrice(t, fixedPrice);
+        writeText(out, price == null ? null : price.toPlainString());
+        if (fixedPrice == FixedPoint.NULL) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(8);
+            out.writeLong(fixedPrice);
+        }
+        writeFloat8(out, t.marketCap());
+        writeFloat8(out, t.pctChange24h());
+        out.writeInt(8);
+        out.writeLong(toPgMicros(t.tsBucket()));
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeFloat8(DataOutputStream out, Double value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeDouble(value);
+    }
+
+    private static long toPgMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000 - PG_EPOCH_MICROS;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.priceingestor.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// price_sources and price_currencies (V11) and price_symbols (V13), the dictionaries behind prices_v2's
+// keys, cached in process. The first two hold a handful of rows and price_symbols one per ticker, so a
+// miss simply inserts and reads the key back. A key read
+// inside a transaction is only cached once it commits (as CoinRepository does for coins), so a rolled
+// back insert never leaves a key behind that no row carries; until then a repeat miss reads it again.
+@Repository
+public class DimensionRepository implements SmartInitializingSingleton {
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final Map<String, Short> sources = new ConcurrentHashMap<>();
+    private final Map<String, Short> currencies = new ConcurrentHashMap<>();
+    private final Map<String, Integer> symbols = new ConcurrentHashMap<>();
+
+    public DimensionRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbc.query("SELECT source_key, source FROM price_sources",
+            rs -> { sources.put(rs.getString("source"), rs.getShort("source_key")); });
+        jdbc.query("SELECT currency_key, vs_currency FROM price_currencies",
+            rs -> { currencies.put(rs.getString("vs_currency"), rs.getShort("currency_key")); });
+        jdbc.query("SELECT symbol_key, symbol FROM price_symbols",
+            rs -> { symbols.put(rs.getString("symbol"), rs.getInt("symbol_key")); });
+    }
+
+    public short sourceKey(String source) {
+        Short key = sources.get(source);
+        return key != null ? key : key(sources, "price_sources", "source_key", "source", source, Short.class);
+    }
+
+    public short currencyKey(String vsCurrency) {
+        Short key = currencies.get(vsCurrency);
+        return key != null ? key : key(currencies, "price_currencies", "currency_key", "vs_currency", vsCurrency, Short.class);
+    }
+
+    public int symbolKey(String symbol) {
+        Integer key = symbols.get(symbol);
+        return key != null ? key : key(symbols, "price_symbols", "symbol_key", "symbol", symbol, Integer.class);
+    }
+
+    // Whether all three keys resolve without a database round trip
+    public boolean cached(String source, String symbol, String vsCurrency) {
+        return sources.containsKey(source) && symbols.containsKey(symbol) && currencies.containsKey(vsCurrency);
+    }
+
+    // Table and column names are the constants above; the existence check first keeps the identity
+    // sequence from advancing on every conflict
+    private <K> K key(Map<String, K> cache, String table, String keyColumn, String column, String value, Class<K> type) {
+        MapSqlParameterSource params = new MapSqlParameterSource("value", value);
+        jdbc.update("INSERT INTO " + table + " (" + column + ") SELECT :value " +
+            "WHERE NOT EXISTS (SELECT 1 FROM " + table + " WHERE " + column + " = :value) " +
+            "ON CONFLICT (" + column + ") DO NOTHING", params);
+        K key = jdbc.queryForObject("SELECT " + keyColumn + " FROM " + table + " WHERE " + column + " = :value", params, type);
+        cacheOnCommit(cache, value, key);
+        return key;
+    }
+
+    private static <K> void cacheOnCommit(Map<String, K> cache, String value, K key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.put(value, key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.put(value, key);
+            }
+        });
+    }
+}
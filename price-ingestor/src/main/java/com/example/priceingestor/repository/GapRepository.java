@@ -0,0 +1,199 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.PriceGap;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class GapRepository {
+
+    private static final RowMapper<PriceGap> GAP = (rs, rowNum) -> new PriceGap(
+        rs.getString("source"),
+        rs.getString("symbol"),
+        rs.getString("vs_currency"),
+        rs.getString("coin_id"),
+        rs.getString("name"),
+        rs.getTimestamp("gap_start").toInstant(),
+        rs.getTimestamp("gap_end").toInstant(),
+        rs.getInt("missing_buckets"),
+        rs.getString("status"),
+        rs.getInt("attempts")
+    );
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final String rows;
+
+    public GapRepository(NamedParameterJdbcTemplate jdbc, @Value("${ingestor.prices-schema}") String schema) {
+        this.jdbc = jdbc;
+        this.rows = PriceSchema.parse(schema).rows();
+    }
+
+    // Gaps-and-islands over the bucket sequence: one ordered pass per symbol with lead(), reporting
+    // every step between consecutive rows longer than `tolerance`. Only interior gaps are returned;
+    // a symbol that stops reporting is only flagged once it comes back (it may have left the universe).
+    public List<PriceGap> findGaps(String source, Instant from, Instant to, Duration tolerance) {
+        String sql = "SELECT source, symbol, vs_currency, coin_id, name, " +
+            "  ts_bucket + interval '1 minute' AS gap_start, next_bucket - interval '1 minute' AS gap_end, " +
+            "  CAST(EXTRACT(EPOCH FROM (next_bucket - ts_bucket)) / 60 AS INTEGER) - 1 AS missing_buckets, " +
+            "  'open' AS status, 0 AS attempts " +
+            "FROM (SELECT p.source, p.symbol, p.vs_currency, " +
+            "        COALESCE(p.coin_id, c.coin_id) AS coin_id, COALESCE(p.name, c.name) AS name, p.ts_bucket, " +
+            "        lead(p.ts_bucket) OVER (PARTITION BY p.symbol, p.vs_currency ORDER BY p.ts_bucket) AS next_bucket " +
+            "      FROM " + rows + " p LEFT JOIN coins c ON c.coin_key = p.coin_key " +
+            "      WHERE p.source = :source AND p.ts_bucket >= :from AND p.ts_bucket <= :to) r " +
+            "WHERE next_bucket - ts_bucket > CAST(:tolerance AS interval)";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("from", Timestamp.from(from))
+            .addValue("to", Timestamp.from(to))
+            .addValue("tolerance", tolerance.toSeconds() + " seconds");
+
+        return jdbc.query(sql, params, GAP);
+    }
+
+    // Minutes in [from, to] in which the source wrote no row and no heartbeat at all, i.e. outages,
+    // in order
+    public List<Instant> findSourceOutageMinutes(String source, Instant from, Instant to) {
+        String sql = "SELECT minute FROM (" +
+            "  SELECT generate_series(date_trunc('minute', CAST(:from AS timestamptz)), " +
+            "                         CAST(:to AS timestamptz), interval '1 minute') AS minute " +
+            "  EXCEPT SELECT date_trunc('minute', ts_bucket) FROM " + rows + " " +
+            "    WHERE source = :source AND ts_bucket >= :from AND ts_bucket <= :to " +
+            "  EXCEPT SELECT ts_bucket FROM price_heartbeats " +
+            "    WHERE source = :source AND ts_bucket >= :from AND ts_bucket <= :to" +
+            ") missing ORDER BY minute";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("from", Timestamp.from(from))
+            .addValue("to", Timestamp.from(to));
+
+        return jdbc.query(sql, params, (rs, rowNum) -> rs.getTimestamp("minute").toInstant());
+    }
+
+    // Records the work units of a cycle whose fetch failed (V16)
+    public void recordFailedFetch(String source, Instant bucket, List<String> units, String error) {
+        String sql = "INSERT INTO failed_fetches (source, ts_bucket, work_unit, error) " +
+            "VALUES (:source, :ts_bucket, :work_unit, :error) " +
+            "ON CONFLICT (source, ts_bucket, work_unit) DO UPDATE SET error = EXCLUDED.error, failed_at = now()";
+
+        MapSqlParameterSource[] batch = units.stream().map(unit -> new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("ts_bucket", Timestamp.from(bucket))
+            .addValue("work_unit", unit)
+            .addValue("error", error)
+        ).toArray(MapSqlParameterSource[]::new);
+
+        jdbc.batchUpdate(sql, batch);
+    }
+
+    public int pruneFailedFetches(Instant before) {
+        return jdbc.update("DELETE FROM failed_fetches WHERE ts_bucket < :before",
+            new MapSqlParameterSource("before", Timestamp.from(before)));
+    }
+
+    // Minutes in [from, to] in which some work unit of the source failed, in order
+    public List<Instant> findFailedFetchMinutes(String source, Instant from, Instant to) {
+        String sql = "SELECT DISTINCT date_trunc('minute', ts_bucket) AS minute FROM failed_fetches " +
+            "WHERE source = :source AND ts_bucket >= :from AND ts_bucket <= :to ORDER BY minute";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("from", Timestamp.from(from))
+            .addValue("to", Timestamp.from(to));
+
+        return jdbc.query(sql, params, (rs, rowNum) -> rs.getTimestamp("minute").toInstant());
+    }
+
+    public Optional<Instant> latestBucket(String source, Instant since) {
+        String sql = "SELECT max(ts_bucket) FROM " + rows + " WHERE source = :source AND ts_bucket >= :since";
+
+        Timestamp latest = jdbc.queryForObject(sql, new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("since", Timestamp.from(since)), Timestamp.class);
+        return Optional.ofNullable(latest).map(Timestamp::toInstant);
+    }
+
+    public int enqueue(List<PriceGap> gaps) {
+        String sql = "INSERT INTO price_gaps (source, symbol, vs_currency, coin_id, name, gap_start, gap_end, missing_buckets) " +
+            "VALUES (:source, :symbol, :vs_currency, :coin_id, :name, :gap_start, :gap_end, :missing_buckets) " +
+            "ON CONFLICT (source, symbol, vs_currency, gap_start) DO NOTHING";
+
+        MapSqlParameterSource[] batch = gaps.stream().map(g -> new MapSqlParameterSource()
+            .addValue("source", g.source())
+            .addValue("symbol", g.symbol())
+            .addValue("vs_currency", g.vsCurrency())
+            .addValue("coin_id", g.coinId())
+            .addValue("name", g.name())
+            .addValue("gap_start", Timestamp.from(g.gapStart()))
+            .addValue("gap_end", Timestamp.from(g.gapEnd()))
+            .addValue("missing_buckets", g.missingBuckets())
+        ).toArray(MapSqlParameterSource[]::new);
+
+        int queued = 0;
+        for (int c : jdbc.batchUpdate(sql, batch)) {
+            if (c > 0) {
+                queued += c;
+            }
+        }
+        return queued;
+    }
+
+    public List<PriceGap> findOpen(String source, int limit) {
+        String sql = "SELECT source, symbol, vs_currency, coin_id, name, gap_start, gap_end, missing_buckets, status, attempts " +
+            "FROM price_gaps WHERE source = :source AND status = 'open' " +
+            "ORDER BY detected_at LIMIT :limit";
+
+        return jdbc.query(sql, new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("limit", limit), GAP);
+    }
+
+    public int countOpen(String source) {
+        Integer count = jdbc.queryForObject(
+            "SELECT count(*) FROM price_gaps WHERE source = :source AND status = 'open'",
+            new MapSqlParameterSource("source", source), Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    // Windows of `step` inside the gap (whole ones only, starting at gap_start) that still have no
+    // row at all. With a 1 minute step that is the distinct minutes still missing; rows finer than a
+    // minute (the stream path) or several per window count once.
+    public int countStillMissing(PriceGap gap, Duration step) {
+        String sql = "SELECT count(*) FROM generate_series(CAST(:gap_start AS timestamptz), " +
+            "  CAST(:gap_end AS timestamptz) + interval '1 minute' - CAST(:step AS interval), CAST(:step AS interval)) w " +
+            "WHERE NOT EXISTS (SELECT 1 FROM " + rows + " p " +
+            "  WHERE p.source = :source AND p.symbol = :symbol AND p.vs_currency = :vs_currency " +
+            "    AND p.ts_bucket >= w AND p.ts_bucket < w + CAST(:step AS interval))";
+
+        Integer missing = jdbc.queryForObject(sql, new MapSqlParameterSource()
+            .addValue("source", gap.source())
+            .addValue("symbol", gap.symbol())
+            .addValue("vs_currency", gap.vsCurrency())
+            .addValue("gap_start", Timestamp.from(gap.gapStart()))
+            .addValue("gap_end", Timestamp.from(gap.gapEnd()))
+            .addValue("step", step.toSeconds() + " seconds"), Integer.class);
+        return missing == null ? 0 : missing;
+    }
+
+    public void updateStatus(PriceGap gap, String status) {
+        String sql = "UPDATE price_gaps SET status = :status, attempts = attempts + 1, updated_at = now() " +
+            "WHERE source = :source AND symbol = :symbol AND vs_currency = :vs_currency AND gap_start = :gap_start";
+
+        jdbc.update(sql, new MapSqlParameterSource()
+            .addValue("status", status)
+            .addValue("source", gap.source())
+            .addValue("symbol", gap.symbol())
+            .addValue("vs_currency", gap.vsCurrency())
+            .addValue("gap_start", Timestamp.from(gap.gapStart())));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.PriceTick;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class HeartbeatRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public HeartbeatRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // Batches of the same cycle add up into one row per (source, minute)
+    public void record(String source, Instant bucket, int observed, int suppressed) {
+        String sql = "INSERT INTO price_heartbeats (source, ts_bucket, observed, suppressed) " +
+            "VALUES (:source, :ts_bucket, :observed, :suppressed) " +
+            "ON CONFLICT (source, ts_bucket) DO UPDATE SET " +
+            "observed = price_heartbeats.observed + EXCLUDED.observed, " +
+            "suppressed = price_heartbeats.suppressed + EXCLUDED.suppressed";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("ts_bucket", Timestamp.from(bucket.truncatedTo(ChronoUnit.MINUTES)))
+            .addValue("observed", observed)
+            .addValue("suppressed", suppressed);
+
+        jdbc.update(sql, params);
+    }
+
+    // One price_unchanged marker per suppressed tick (V15), which findPriceAt requires per symbol
+    public void recordUnchanged(List<PriceTick> suppressed) {
+        String sql = "INSERT INTO price_unchanged (source, symbol, vs_currency, ts_bucket) " +
+            "VALUES (:source, :symbol, :vs_currency, :ts_bucket) " +
+            "ON CONFLICT DO NOTHING";
+
+        MapSqlParameterSource[] batch = suppressed.stream().map(t -> new MapSqlParameterSource()
+            .addValue("source", t.source())
+            .addValue("symbol", t.symbol())
+            .addValue("vs_currency", t.vsCurrency())
+            .addValue("ts_bucket", Timestamp.from(t.tsBucket().truncatedTo(ChronoUnit.MINUTES)))
+        ).toArray(MapSqlParameterSource[]::new);
+
+        jdbc.batchUpdate(sql, batch);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.priceingestor.repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// DDL for the monthly partitions (<table>_pYYYYMM) of prices (V2__partition_prices.sql) and
+// prices_v2 (V11__create_prices_v2.sql)
+@Repository
+public class PartitionRepository {
+
+    public static final List<String> TABLES = List.of("prices", "prices_v2");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public PartitionRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    public static Optional<YearMonth> monthOf(String table, String partitionName) {
+        Matcher m = Pattern.compile(Pattern.quote(table) + "_p(\\d{6})").matcher(partitionName);
+        return m.matches() ? Optional.of(YearMonth.parse(m.group(1), SUFFIX)) : Optional.empty();
+    }
+
+    // Months currently attached to `table`
+    public List<YearMonth> attachedMonths(String table) {
+        String sql = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = CAST(:table AS regclass)";
+
+        return jdbc.queryForList(sql, Map.of("table", checked(table)), String.class).stream()
+            .map(name -> monthOf(table, name))
+            .flatMap(Optional::stream)
+            .sorted()
+            .toList();
+    }
+
+    // Makes `month` an attached partition of `table`. A month that retention detached but did not drop
+    // still exists as a plain table, where CREATE TABLE IF NOT EXISTS would quietly do nothing and
+    // leave inserts with no partition, so it is attached again instead (DETACH ... CONCURRENTLY left a
+    // CHECK constraint matching the bounds behind, so the attach need not rescan it). Returns whether
+    // it was.
+    public boolean create(String table, YearMonth month) {
+        // Identifiers and bounds come from TABLES and YearMonth only, never from user input
+        String name = partitionName(checked(table), month);
+        String bounds = "FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') " +
+            "TO ('" + month.plusMonths(1).atDay(1) + " 00:00:00+00')";
+
+        Boolean detached = jdbc.queryForObject(
+            "SELECT to_regclass(:name) IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = to_regclass(:name))",
+            Map.of("name", name), Boolean.class);
+        if (Boolean.TRUE.equals(detached)) {
+            jdbc.getJdbcTemplate().execute("ALTER TABLE " + table + " ATTACH PARTITION " + name + " " + bounds);
+            return true;
+        }
+        jdbc.getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table + " " + bounds);
+        return false;
+    }
+
+    // CONCURRENTLY only takes a SHARE UPDATE EXCLUSIVE lock on the table, so inserts keep flowing
+    public void detach(String table, YearMonth month) {
+        jdbc.getJdbcTemplate().execute(
+            "ALTER TABLE " + checked(table) + " DETACH PARTITION " + partitionName(table, month) + " CONCURRENTLY");
+    }
+
+    public void drop(String table, YearMonth month) {
+        jdbc.getJdbcTemplate().execute("DROP TABLE IF EXISTS " + partitionName(checked(table), month));
+    }
+
+    private static String checked(String table) {
+        if (!TABLES.contains(table)) {
+            throw new IllegalArgumentException("not a partitioned price table: " + table);
+        }
+        return table;
+    }
+}
@@ -1,48 +1,236 @@
 package com.example.priceingestor.repository;
 
-import com.example.priceingestor.model.CoinMarket;
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.LastPrice;
+import com.example.priceingestor.model.PriceTick;
+import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public class PriceRepository {
+public class PriceRepository implements PriceWriter {
+
+    private static final RowMapper<LastPrice> LAST_PRICE = (rs, rowNum) -> {
+        BigDecimal price = rs.getBigDecimal("price");
+        return new LastPrice(
+            rs.getString("source"),
+            rs.getString("symbol"),
+            rs.getString("vs_currency"),
+            FixedPoint.unscaledOf(price),
+            FixedPoint.scaleOf(price),
+            toDouble(rs.getBigDecimal("market_cap")),
+            toDouble(rs.getBigDecimal("pct_change_24h")),
+            rs.getTimestamp("ts_bucket").toInstant()
+        );
+    };
+
+    private static final String LAST_PRICE_COLUMNS =
+        "p.source, p.symbol, p.vs_currency, " + PriceStorage.VALUE + " AS price, p.market_cap, p.pct_change_24h, p.ts_bucket ";
+
+    private static final String INSERT_V1 =
+        "INSERT INTO prices (source, symbol, coin_key, vs_currency, price, price_fp, market_cap, pct_change_24h, ts_bucket) " +
+        "VALUES (:source, :symbol, :coin_key, :vs_currency, :price, :price_fp, :market_cap, :pct_change_24h, :ts_bucket) " +
+        "ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_V2 =
+        "INSERT INTO prices_v2 (ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price, symbol_key) " +
+        "VALUES (:ts_bucket, :price_fp, :market_cap, :pct_change_24h, :coin_key, :source_key, :currency_key, :price, :symbol_key) " +
+        "ON CONFLICT DO NOTHING";
+
+    // Never moves a series back to an older bucket (replays, backfills)
+    static final String UPSERT_LATEST =
+        "INSERT INTO latest_prices (source, symbol, vs_currency, price, market_cap, pct_change_24h, ts_bucket) " +
+        "VALUES (:source, :symbol, :vs_currency, :price, :market_cap, :pct_change_24h, :ts_bucket) " +
+        "ON CONFLICT (source, symbol, vs_currency) DO UPDATE SET " +
+        "  price = EXCLUDED.price, market_cap = EXCLUDED.market_cap, " +
+        "  pct_change_24h = EXCLUDED.pct_change_24h, ts_bucket = EXCLUDED.ts_bucket " +
+        "WHERE latest_prices.ts_bucket < EXCLUDED.ts_bucket";
+
+    private static final Comparator<PriceTick> SERIES_ORDER = Comparator.comparing(PriceTick::source)
+        .thenComparing(PriceTick::symbol)
+        .thenComparing(PriceTick::vsCurrency);
 
     private final NamedParameterJdbcTemplate jdbc;
+    private final CoinRepository coins;
+    private final DimensionRepository dimensions;
+    private final PriceStorage storage;
+    private final PriceSchema schema;
 
-    public PriceRepository(NamedParameterJdbcTemplate jdbc) {
+    public PriceRepository(
+        NamedParameterJdbcTemplate jdbc,
+        CoinRepository coins,
+        DimensionRepository dimensions,
+        @Value("${ingestor.price-storage}") String storage,
+        @Value("${ingestor.prices-schema}") String schema
+    ) {
         this.jdbc = jdbc;
+        this.coins = coins;
+        this.dimensions = dimensions;
+        this.storage = new PriceStorage(storage, coins);
+        this.schema = PriceSchema.parse(schema);
+    }
+
+    @Override
+    public String name() {
+        return "batch";
     }
 
-    public int[] insertBatchIgnoreDuplicates(String source, List<CoinMarket> markets) {
-        // Bucket to nearest minute to match unique index (source, symbol, ts_bucket)
-        ZonedDateTime nowUtc = ZonedDateTime.ofInstant(Instant.now(), ZoneOffset.UTC)
-            .truncatedTo(ChronoUnit.MINUTES);
-        Timestamp tsBucket = Timestamp.from(nowUtc.toInstant());
+    @Override
+    public int write(List<PriceTick> ticks) {
+        int total = 0;
+        for (int c : insertBatchIgnoreDuplicates(ticks)) {
+            // ON CONFLICT DO NOTHING reports 0 for duplicates
+            if (c > 0) {
+                total += c;
+            }
+        }
+        return total;
+    }
 
-        String sql = "INSERT INTO prices (source, symbol, coin_id, name, price, market_cap, pct_change_24h, ts_bucket) " +
-            "VALUES (:source, :symbol, :coin_id, :name, :price, :market_cap, :pct_change_24h, :ts_bucket) " +
-            "ON CONFLICT DO NOTHING";
+    // Each tick carries its own source and ts_bucket (backfills span many buckets in one batch).
+    // coin_id and name live in coins; the row only references them through coin_key.
+    // The price is bound exactly, as NUMERIC or as price_fp (see PriceStorage).
+    // With the v2 schema, source, symbol and vs_currency go in as their dictionary keys instead.
+    public int[] insertBatchIgnoreDuplicates(List<PriceTick> ticks) {
+        boolean v2 = schema == PriceSchema.V2;
+        Map<String, Integer> keys = coins.keysFor(ticks);
+        MapSqlParameterSource[] batch = ticks.stream().map(t -> {
+            long fixed = storage.fixedPrice(t);
+            MapSqlParameterSource row = new MapSqlParameterSource()
+                .addValue("coin_key", keys.get(t.coinId()))
+                .addValue("price", PriceStorage.numericPrice(t, fixed), Types.NUMERIC)
+                .addValue("price_fp", PriceStorage.boxed(fixed), Types.BIGINT)
+                .addValue("market_cap", t.marketCap())
+                .addValue("pct_change_24h", t.pctChange24h())
+                .addValue("ts_bucket", Timestamp.from(t.tsBucket()));
+            if (v2) {
+                return row
+                    .addValue("source_key", dimensions.sourceKey(t.source()))
+                    .addValue("currency_key", dimensions.currencyKey(t.vsCurrency()))
+                    .addValue("symbol_key", dimensions.symbolKey(t.symbol()));
+            }
+            return row
+                .addValue("source", t.source())
+                .addValue("symbol", t.symbol())
+                .addValue("vs_currency", t.vsCurrency());
+        }).toArray(MapSqlParameterSource[]::new);
 
-        MapSqlParameterSource[] batch = markets.stream().map(m -> new MapSqlParameterSource()
-            .addValue("source", source)
-            .addValue("symbol", m.symbol())
-            .addValue("coin_id", m.id())
-            .addValue("name", m.name())
-            .addValue("price", m.current_price())
-            .addValue("market_cap", m.market_cap())
-            .addValue("pct_change_24h", m.price_change_percentage_24h())
-            .addValue("ts_bucket", tsBucket)
+        return jdbc.batchUpdate(v2 ? INSERT_V2 : INSERT_V1, batch);
+    }
+
+    // Brings latest_prices (V12) up to the newest tick of each series in the batch. Runs in the
+    // caller's transaction (PriceSink), so it commits or rolls back with the rows themselves.
+    // One row per series, in key order, so concurrent batches lock latest_prices rows in the same order.
+    public int upsertLatest(List<PriceTick> ticks) {
+        Map<List<String>, PriceTick> newest = new HashMap<>();
+        for (PriceTick t : ticks) {
+            if (t.hasPrice()) {
+                newest.merge(List.of(t.source(), t.symbol(), t.vsCurrency()), t,
+                    (a, b) -> b.tsBucket().isAfter(a.tsBucket()) ? b : a);
+            }
+        }
+        MapSqlParameterSource[] batch = newest.values().stream().sorted(SERIES_ORDER).map(t -> new MapSqlParameterSource()
+            .addValue("source", t.source())
+            .addValue("symbol", t.symbol())
+            .addValue("vs_currency", t.vsCurrency())
+            .addValue("price", FixedPoint.toBigDecimal(t.priceFp(), t.priceScale()), Types.NUMERIC)
+            .addValue("market_cap", t.marketCap())
+            .addValue("pct_change_24h", t.pctChange24h())
+            .addValue("ts_bucket", Timestamp.from(t.tsBucket()))
         ).toArray(MapSqlParameterSource[]::new);
 
-        return jdbc.batchUpdate(sql, batch);
+        int updated = 0;
+        for (int c : jdbc.batchUpdate(UPSERT_LATEST, batch)) {
+            if (c > 0) {
+                updated += c;
+            }
+        }
+        return updated;
     }
-}
 
+    // Latest row per (source, symbol, vs_currency) among buckets newer than `since`, straight from
+    // latest_prices; used to warm-start the change filter
+    public List<LastPrice> findLatestSince(Instant since) {
+        String sql = "SELECT source, symbol, vs_currency, price, market_cap, pct_change_24h, ts_bucket " +
+            "FROM latest_prices WHERE ts_bucket >= :since";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("since", Timestamp.from(since));
 
+        return jdbc.query(sql, params, LAST_PRICE);
+    }
+
+    // Price at minute `at` by last-observation-carried-forward: the newest row at or before `at`, no
+    // older than `maxSkip` (ingestor.change-filter.max-skip-minutes). The change filter writes a row at
+    // least that often while a series is observed, so an older row means an outage and nothing is
+    // carried across it. If the source has heartbeats in that window (heartbeat mode, V4), a minute
+    // without its own row is only filled when the symbol itself has a price_unchanged marker at `at`
+    // (V15); a source heartbeat alone does not say that this symbol's page or batch answered.
+    public Optional<LastPrice> findPriceAt(String source, String symbol, String vsCurrency, Instant at, Duration maxSkip) {
+        String sql = "SELECT " + LAST_PRICE_COLUMNS + "FROM " + schema.rows() + " p LEFT JOIN coins c ON c.coin_key = p.coin_key " +
+            "WHERE p.source = :source AND p.symbol = :symbol AND p.vs_currency = :vs_currency " +
+            "AND p.ts_bucket <= :at AND p.ts_bucket > :floor " +
+            "AND (p.ts_bucket = :at " +
+            "  OR EXISTS (SELECT 1 FROM price_unchanged u WHERE u.source = :source AND u.symbol = :symbol " +
+            "             AND u.vs_currency = :vs_currency AND u.ts_bucket = :at) " +
+            "  OR NOT EXISTS (SELECT 1 FROM price_heartbeats h WHERE h.source = :source " +
+            "                 AND h.ts_bucket <= :at AND h.ts_bucket > :floor)) " +
+            "ORDER BY p.ts_bucket DESC LIMIT 1";
+
+        Instant minute = at.truncatedTo(ChronoUnit.MINUTES);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("symbol", symbol)
+            .addValue("vs_currency", vsCurrency)
+            .addValue("at", Timestamp.from(minute))
+            .addValue("floor", Timestamp.from(minute.minus(maxSkip)));
+
+        return jdbc.query(sql, params, LAST_PRICE).stream().findFirst();
+    }
+
+    // Per-minute realized volatility per coin since `since`: the standard deviation of log returns
+    // between consecutive rows, each scaled by 1/sqrt(minutes apart) so coins sampled at different
+    // rates are comparable. Rows from before coins existed carry coin_id themselves.
+    public Map<String, Double> realizedVolatility(String source, String vsCurrency, Instant since) {
+        String sql = "SELECT coin_id, stddev_samp(r) AS vol FROM (" +
+            "  SELECT coin_id, ln(price / lag(price) OVER w) " +
+            "    / sqrt(EXTRACT(EPOCH FROM ts_bucket - lag(ts_bucket) OVER w) / 60) AS r " +
+            "  FROM (SELECT COALESCE(p.coin_id, c.coin_id) AS coin_id, " + PriceStorage.VALUE + " AS price, p.ts_bucket " +
+            "        FROM " + schema.rows() + " p LEFT JOIN coins c ON c.coin_key = p.coin_key " +
+            "        WHERE p.source = :source AND p.vs_currency = :vs_currency AND p.ts_bucket >= :since " +
+            "          AND (p.price > 0 OR p.price_fp > 0)) p " +
+            "  WINDOW w AS (PARTITION BY coin_id ORDER BY ts_bucket)" +
+            ") x WHERE r IS NOT NULL GROUP BY coin_id";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("source", source)
+            .addValue("vs_currency", vsCurrency)
+            .addValue("since", Timestamp.from(since));
+
+        Map<String, Double> vols = new HashMap<>();
+        jdbc.query(sql, params, rs -> {
+            double vol = rs.getDouble("vol");
+            if (!rs.wasNull()) {
+                vols.put(rs.getString("coin_id"), vol);
+            }
+        });
+        return vols;
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
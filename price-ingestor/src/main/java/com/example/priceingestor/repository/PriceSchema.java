@@ -0,0 +1,31 @@
+package com.example.priceingestor.repository;
+
+import java.util.Locale;
+
+// Which layout of the price history readers and writers use (ingestor.prices-schema).
+// v1: prices, one row with text source/symbol/vs_currency and a surrogate id.
+// v2: prices_v2 (V11), integer source/currency/coin keys under a composite primary key. Readers go
+// through the prices_v2_rows view, which has the v1 column names, so their SQL is shared.
+public enum PriceSchema {
+    V1("prices"),
+    V2("prices_v2_rows");
+
+    private final String rows;
+
+    PriceSchema(String rows) {
+        this.rows = rows;
+    }
+
+    public static PriceSchema parse(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("ingestor.prices-schema must be 'v1' or 'v2': " + name);
+        }
+    }
+
+    // Table or view to read rows from, with v1's columns
+    public String rows() {
+        return rows;
+    }
+}
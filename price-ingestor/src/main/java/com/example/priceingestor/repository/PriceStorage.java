@@ -0,0 +1,44 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import java.math.BigDecimal;
+
+// Which column a writer puts a tick's price in. numeric: prices.price NUMERIC(38,12), as before.
+// fixed: prices.price_fp BIGINT at the coin's scale (coins.price_scale), unless the tick cannot be
+// stored exactly at that scale, which goes to price instead. Readers use VALUE, which covers both.
+final class PriceStorage {
+
+    // Needs `prices p LEFT JOIN coins c ON c.coin_key = p.coin_key`
+    static final String VALUE = "COALESCE(p.price, p.price_fp / 10::numeric ^ c.price_scale)";
+
+    private final boolean fixed;
+    private final CoinRepository coins;
+
+    PriceStorage(String mode, CoinRepository coins) {
+        if (!"numeric".equals(mode) && !"fixed".equals(mode)) {
+            throw new IllegalArgumentException("ingestor.price-storage must be 'numeric' or 'fixed': " + mode);
+        }
+        this.fixed = "fixed".equals(mode);
+        this.coins = coins;
+    }
+
+    // price_fp for this tick, FixedPoint.NULL when it goes to price. The scale comes from the coin
+    // cache, which takes a scale keysFor() assigned only once its transaction commits; until then
+    // the coin's prices go to price.
+    long fixedPrice(PriceTick t) {
+        if (!fixed) {
+            return FixedPoint.NULL;
+        }
+        Integer scale = coins.find(t.coinId()).map(c -> c.priceScale()).orElse(null);
+        return scale == null ? FixedPoint.NULL : FixedPoint.rescaleExact(t.priceFp(), t.priceScale(), scale);
+    }
+
+    static BigDecimal numericPrice(PriceTick t, long fixedPrice) {
+        return fixedPrice == FixedPoint.NULL ? FixedPoint.toBigDecimal(t.priceFp(), t.priceScale()) : null;
+    }
+
+    static Long boxed(long fixedPrice) {
+        return fixedPrice == FixedPoint.NULL ? null : fixedPrice;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.PriceTick;
+import java.util.List;
+
+// A strategy for persisting one batch of ticks into prices.
+// Implementations must ignore rows that already exist for (source, symbol, ts_bucket).
+public interface PriceWriter {
+
+    // Name used to select the writer in config (ingestor.writer, ingestor.backfill.writer)
+    String name();
+
+    // Returns the number of rows actually inserted
+    int write(List<PriceTick> ticks);
+}
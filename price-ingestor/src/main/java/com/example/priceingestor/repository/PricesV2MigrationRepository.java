@@ -0,0 +1,196 @@
+package com.example.priceingestor.repository;
+
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// The online copy of prices into prices_v2 (V11__create_prices_v2.sql): the dual-write trigger, the
+// progress row in prices_v2_migration, the page-range copy itself, and the page-range symbol_key
+// backfill of rows copied before V13. Every statement is meant to run in a short transaction of its
+// own (see PricesV2Migrator).
+@Repository
+public class PricesV2MigrationRepository {
+
+    // Progress row. partition is null until the first batch and nextPage is a heap page of it; copied is
+    // set once every prices partition has been walked, and symbolPartition/symbolNextPage then track the
+    // walk over prices_v2 that fills in symbol_key.
+    public record State(
+        YearMonth partition, long nextPage, long rowsCopied, boolean copied,
+        YearMonth symbolPartition, long symbolNextPage, boolean completed
+    ) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public PricesV2MigrationRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // Attaches prices_v2_dual_write() to prices unless it is already there. From here on every
+    // committed prices row also lands in prices_v2, so the page walk only has to reach the rows
+    // written before this point.
+    public void installTrigger() {
+        jdbc.getJdbcTemplate().execute(
+            "DO $$ BEGIN " +
+            "  IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'prices_v2_dual_write' " +
+            "                 AND tgrelid = 'prices'::regclass) THEN " +
+            "    CREATE TRIGGER prices_v2_dual_write AFTER INSERT ON prices " +
+            "    FOR EACH ROW EXECUTE FUNCTION prices_v2_dual_write(); " +
+            "  END IF; " +
+            "END $$");
+        jdbc.getJdbcTemplate().update("UPDATE prices_v2_migration SET started_at = COALESCE(started_at, now())");
+    }
+
+    // Locks the progress row for the calling transaction; empty while another instance holds it
+    public Optional<State> lock() {
+        String sql = "SELECT partition_name, next_page, rows_copied, copied_at IS NOT NULL AS copied, " +
+            "symbol_partition_name, symbol_next_page, completed_at IS NOT NULL AS completed " +
+            "FROM prices_v2_migration FOR UPDATE SKIP LOCKED";
+
+        return jdbc.query(sql, Map.of(), (rs, rowNum) -> {
+            String name = rs.getString("partition_name");
+            String symbolName = rs.getString("symbol_partition_name");
+            return new State(
+                name == null ? null : PartitionRepository.monthOf("prices", name).orElseThrow(),
+                rs.getLong("next_page"),
+                rs.getLong("rows_copied"),
+                rs.getBoolean("copied"),
+                symbolName == null ? null : PartitionRepository.monthOf("prices_v2", symbolName).orElseThrow(),
+                rs.getLong("symbol_next_page"),
+                rs.getBoolean("completed"));
+        }).stream().findFirst();
+    }
+
+    // Heap pages the partition has right now. Rows appended to prices later are covered by the trigger,
+    // and rows appended to prices_v2 later already carry their symbol_key.
+    public long pages(String table, YearMonth month) {
+        Long pages = jdbc.queryForObject(
+            "SELECT pg_relation_size(CAST(:partition AS regclass)) / current_setting('block_size')::bigint",
+            Map.of("partition", PartitionRepository.partitionName(checked(table), month)), Long.class);
+        return pages == null ? 0 : pages;
+    }
+
+    // Copies the rows on heap pages [fromPage, toPage) of one prices partition. Dictionary and coins
+    // rows the range needs are created first (old rows may predate coins and carry only coin_id).
+    // Rows already in prices_v2, from the trigger or an earlier attempt, are skipped, and so are rows
+    // with neither coin_key nor coin_id, which no coin_key can be found for.
+    public int copyPages(YearMonth month, long fromPage, long toPage) {
+        // The name is built from a YearMonth, never from input
+        String partition = PartitionRepository.partitionName("prices", month);
+        String range = " WHERE ctid >= CAST('(' || :from || ',0)' AS tid) AND ctid < CAST('(' || :to || ',0)' AS tid)";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("from", fromPage)
+            .addValue("to", toPage);
+
+        jdbc.update("INSERT INTO price_sources (source) SELECT DISTINCT source FROM " + partition + range +
+            " AND NOT EXISTS (SELECT 1 FROM price_sources s WHERE s.source = " + partition + ".source) " +
+            "ON CONFLICT (source) DO NOTHING", params);
+        jdbc.update("INSERT INTO price_currencies (vs_currency) SELECT DISTINCT vs_currency FROM " + partition + range +
+            " AND NOT EXISTS (SELECT 1 FROM price_currencies cu WHERE cu.vs_currency = " + partition + ".vs_currency) " +
+            "ON CONFLICT (vs_currency) DO NOTHING", params);
+        jdbc.update("INSERT INTO price_symbols (symbol) SELECT DISTINCT symbol FROM " + partition + range +
+            " AND NOT EXISTS (SELECT 1 FROM price_symbols sy WHERE sy.symbol = " + partition + ".symbol) " +
+            "ON CONFLICT (symbol) DO NOTHING", params);
+        jdbc.update("INSERT INTO coins (coin_id, symbol, name) " +
+            "SELECT DISTINCT ON (coin_id) coin_id, symbol, COALESCE(name, coin_id) FROM " + partition + range +
+            " AND coin_key IS NULL AND coin_id IS NOT NULL ORDER BY coin_id, ts_bucket DESC " +
+            "ON CONFLICT (coin_id) DO NOTHING", params);
+
+        return jdbc.update("INSERT INTO prices_v2 " +
+            "(ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price, symbol_key) " +
+            "SELECT p.ts_bucket, p.price_fp, p.market_cap, p.pct_change_24h, COALESCE(p.coin_key, c.coin_key), " +
+            "  s.source_key, cu.currency_key, p.price, sy.symbol_key " +
+            "FROM (SELECT * FROM " + partition + range + ") p " +
+            "JOIN price_sources s ON s.source = p.source " +
+            "JOIN price_currencies cu ON cu.vs_currency = p.vs_currency " +
+            "JOIN price_symbols sy ON sy.symbol = p.symbol " +
+            "LEFT JOIN coins c ON p.coin_key IS NULL AND c.coin_id = p.coin_id " +
+            "WHERE COALESCE(p.coin_key, c.coin_key) IS NOT NULL " +
+            "ON CONFLICT DO NOTHING", params);
+    }
+
+    public void advance(YearMonth month, long nextPage, int copied) {
+        jdbc.update("UPDATE prices_v2_migration SET partition_name = :partition, next_page = :next_page, " +
+            "rows_copied = rows_copied + :copied", new MapSqlParameterSource()
+            .addValue("partition", PartitionRepository.partitionName("prices", month))
+            .addValue("next_page", nextPage)
+            .addValue("copied", copied));
+    }
+
+    // Gives the rows on heap pages [fromPage, toPage) of one prices_v2 partition that still lack a
+    // symbol_key their coin's current symbol, the best left for a row that never stored its own. A row
+    // that would then collide in the unique index is deleted instead: the row already keyed wins, and
+    // among unkeyed ones the lower coin_key (the coin known first). So is a row without a coins row,
+    // which prices_v2_rows never showed. A keyed row inserted concurrently makes the UPDATE fail on the
+    // index, and the batch is simply retried.
+    public int keySymbols(YearMonth month, long fromPage, long toPage) {
+        // The name is built from a YearMonth, never from input
+        String partition = PartitionRepository.partitionName("prices_v2", month);
+        String range = " WHERE p.ctid >= CAST('(' || :from || ',0)' AS tid) AND p.ctid < CAST('(' || :to || ',0)' AS tid)" +
+            " AND p.symbol_key IS NULL";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("from", fromPage)
+            .addValue("to", toPage);
+
+        jdbc.update("INSERT INTO price_symbols (symbol) SELECT DISTINCT c.symbol FROM " + partition + " p " +
+            "JOIN coins c ON c.coin_key = p.coin_key" + range +
+            " AND NOT EXISTS (SELECT 1 FROM price_symbols sy WHERE sy.symbol = c.symbol) " +
+            "ON CONFLICT (symbol) DO NOTHING", params);
+
+        return jdbc.update("WITH keyed AS (" +
+            "  SELECT p.ctid AS row_id, p.source_key, p.currency_key, p.ts_bucket, sy.symbol_key, " +
+            "    row_number() OVER (PARTITION BY p.source_key, p.currency_key, sy.symbol_key, p.ts_bucket " +
+            "                       ORDER BY p.coin_key) AS ord " +
+            "  FROM " + partition + " p " +
+            "  LEFT JOIN coins c ON c.coin_key = p.coin_key " +
+            "  LEFT JOIN price_symbols sy ON sy.symbol = c.symbol" + range +
+            "), dropped AS (" +
+            "  DELETE FROM " + partition + " p USING keyed k WHERE p.ctid = k.row_id AND (" +
+            "    k.symbol_key IS NULL OR k.ord > 1 OR EXISTS (SELECT 1 FROM prices_v2 q " +
+            "      WHERE q.source_key = k.source_key AND q.currency_key = k.currency_key " +
+            "        AND q.symbol_key = k.symbol_key AND q.ts_bucket = k.ts_bucket)) " +
+            "  RETURNING p.ctid" +
+            ") " +
+            "UPDATE " + partition + " p SET symbol_key = k.symbol_key FROM keyed k " +
+            "WHERE p.ctid = k.row_id AND k.symbol_key IS NOT NULL AND k.ord = 1 " +
+            "  AND p.ctid NOT IN (SELECT ctid FROM dropped)", params);
+    }
+
+    public void markCopied() {
+        jdbc.getJdbcTemplate().update("UPDATE prices_v2_migration SET copied_at = now()");
+    }
+
+    public void advanceSymbols(YearMonth month, long nextPage) {
+        jdbc.update("UPDATE prices_v2_migration SET symbol_partition_name = :partition, symbol_next_page = :next_page",
+            new MapSqlParameterSource()
+                .addValue("partition", PartitionRepository.partitionName("prices_v2", month))
+                .addValue("next_page", nextPage));
+    }
+
+    // Turns V13's NOT VALID check into a proven NOT NULL. Scans prices_v2, but under SHARE UPDATE
+    // EXCLUSIVE, which inserts do not wait for.
+    public void validateSymbolKeys() {
+        jdbc.getJdbcTemplate().execute("ALTER TABLE prices_v2 VALIDATE CONSTRAINT prices_v2_symbol_key_not_null");
+    }
+
+    public void complete() {
+        jdbc.getJdbcTemplate().update("UPDATE prices_v2_migration SET completed_at = now()");
+    }
+
+    // Heap, indexes and TOAST of every partition of `table` (one of PartitionRepository.TABLES)
+    public long totalBytes(String table) {
+        Long bytes = jdbc.queryForObject(
+            "SELECT COALESCE(sum(pg_total_relation_size(relid)), 0) FROM pg_partition_tree(CAST(:table AS regclass))",
+            Map.of("table", checked(table)), Long.class);
+        return bytes == null ? 0 : bytes;
+    }
+
+    private static String checked(String table) {
+        if (!PartitionRepository.TABLES.contains(table)) {
+            throw new IllegalArgumentException("not a partitioned price table: " + table);
+        }
+        return table;
+    }
+}
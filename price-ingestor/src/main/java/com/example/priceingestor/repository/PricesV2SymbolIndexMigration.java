@@ -0,0 +1,73 @@
+package com.example.priceingestor.repository;
+
+import java.util.List;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+// V14: the unique (source_key, currency_key, symbol_key, ts_bucket) index of prices_v2 (see
+// V13__add_prices_v2_symbol_key.sql), built without blocking the writers. A partitioned table cannot
+// be indexed CONCURRENTLY as a whole, so the parent index is created ON ONLY prices_v2 (invalid, and
+// instant), each partition is indexed CONCURRENTLY and attached to it, and the parent turns valid once
+// every partition has one; partitions PartitionManager creates afterwards get theirs with the table.
+// Runs outside a transaction (CONCURRENTLY refuses one), which is why it is a Java migration and why
+// spring.flyway.postgresql.transactional-lock is off. Rows still without a symbol_key are NULL in the
+// index and never collide, so it can go in before PricesV2Migrator has keyed them.
+@Component
+public class PricesV2SymbolIndexMigration implements JavaMigration {
+
+    private static final String INDEX = "uq_prices_v2_source_currency_symbol_bucket";
+
+    private static final String COLUMNS = " (source_key, currency_key, symbol_key, ts_bucket)";
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("14");
+    }
+
+    @Override
+    public String getDescription() {
+        return "index prices v2 symbol key";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbc = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        jdbc.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX + " ON ONLY prices_v2" + COLUMNS);
+
+        // Partitions whose index is not attached yet; a rerun after a failure starts where it stopped
+        List<String> partitions = jdbc.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'prices_v2'::regclass AND NOT EXISTS (" +
+            "  SELECT 1 FROM pg_inherits x JOIN pg_index ix ON ix.indexrelid = x.inhrelid " +
+            "  WHERE x.inhparent = '" + INDEX + "'::regclass AND ix.indrelid = c.oid) " +
+            "ORDER BY c.relname", String.class);
+
+        for (String partition : partitions) {
+            // Names come from the catalog and are all prices_v2_pYYYYMM
+            String index = partition + "_symbol_bucket_key";
+            // An interrupted CONCURRENTLY build leaves an invalid index that IF NOT EXISTS would keep
+            List<Boolean> valid = jdbc.queryForList(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)", Boolean.class, index);
+            if (valid.contains(Boolean.FALSE)) {
+                jdbc.execute("DROP INDEX CONCURRENTLY " + index);
+            }
+            jdbc.execute("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + partition + COLUMNS);
+            jdbc.execute("ALTER INDEX " + INDEX + " ATTACH PARTITION " + index);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.CandleResolution;
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// prices (with latest_prices and candles) over R2DBC with its own connection pool. Each batch is one
+// multi-row bound statement (the driver pipelines the bindings) followed by the latest_prices
+// upsert and the candle rollups, in one
+// transaction on one pooled connection. The pool is private to this class rather than a
+// ConnectionFactory bean, because such a bean would switch off the JDBC DataSource that Flyway
+// and every other repository still use. Only created with ingestor.persistence=r2dbc.
+@Repository
+@ConditionalOnProperty(name = "ingestor.persistence", havingValue = "r2dbc")
+public class R2dbcPriceRepository implements ReactivePriceWriter, DisposableBean {
+
+    private static final String INSERT =
+        "INSERT INTO prices (source, symbol, coin_key, vs_currency, price, price_fp, market_cap, pct_change_24h, ts_bucket) " +
+        "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9) ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_V2 =
+        "INSERT INTO prices_v2 (ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price, symbol_key) " +
+        "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9) ON CONFLICT DO NOTHING";
+
+    private static final Positional UPSERT_LATEST = Positional.of(PriceRepository.UPSERT_LATEST);
+    private static final Positional ROLLUP_FROM_CANDLES = Positional.of(CandleRepository.ROLLUP_FROM_CANDLES);
+
+    private final ConnectionPool pool;
+    private final CoinRepository coins;
+    private final DimensionRepository dimensions;
+    private final PriceStorage storage;
+    private final PriceSchema schema;
+    private final Positional rollupFromPrices;
+    private final boolean candlesEnabled;
+
+    public R2dbcPriceRepository(
+        CoinRepository coins,
+        DimensionRepository dimensions,
+        @Value("${ingestor.r2dbc.url}") String url,
+        @Value("${spring.datasource.username}") String user,
+        @Value("${spring.datasource.password}") String password,
+        @Value("${ingestor.r2dbc.pool.initial-size}") int initialSize,
+        @Value("${ingestor.r2dbc.pool.max-size}") int maxSize,
+        @Value("${ingestor.candles.enabled}") boolean candlesEnabled,
+        @Value("${ingestor.price-storage}") String storage,
+        @Value("${ingestor.prices-schema}") String schema
+    ) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+            .option(ConnectionFactoryOptions.USER, user)
+            .option(ConnectionFactoryOptions.PASSWORD, password)
+            .build();
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+            .initialSize(initialSize)
+            .maxSize(maxSize)
+            .maxIdleTime(Duration.ofMinutes(10))
+            .build());
+        this.coins = coins;
+        this.dimensions = dimensions;
+        this.storage = new PriceStorage(storage, coins);
+        this.schema = PriceSchema.parse(schema);
+        this.rollupFromPrices = Positional.of(CandleRepository.rollupFromPrices(this.schema.rows()));
+        this.candlesEnabled = candlesEnabled;
+    }
+
+    @Override
+    public String name() {
+        return "r2dbc";
+    }
+
+    @Override
+    public Mono<Integer> write(List<PriceTick> ticks) {
+        if (ticks.isEmpty()) {
+            return Mono.just(0);
+        }
+        return coinKeys(ticks).flatMap(keys -> Mono.usingWhen(
+            pool.create(),
+            conn -> Mono.from(conn.beginTransaction())
+                .then(insert(conn, ticks, keys))
+                // Nothing new means no candle and no latest price can have changed
+                .flatMap(n -> n > 0 ? upsertLatest(conn, ticks).thenReturn(n) : Mono.just(n))
+                .flatMap(n -> n > 0 && candlesEnabled ? refreshCandles(conn, ticks).thenReturn(n) : Mono.just(n))
+                .flatMap(n -> Mono.from(conn.commitTransaction()).thenReturn(n)),
+            Connection::close,
+            (conn, e) -> Mono.from(conn.rollbackTransaction()).onErrorResume(r -> Mono.empty()).then(Mono.from(conn.close())),
+            conn -> Mono.from(conn.rollbackTransaction()).onErrorResume(r -> Mono.empty()).then(Mono.from(conn.close()))));
+    }
+
+    @Override
+    public void destroy() {
+        pool.dispose();
+    }
+
+    // Known coins (and, with the v2 schema, sources, symbols and currencies) resolve from the in-memory caches;
+    // only a batch with a new one goes to the (JDBC) upserts, off the event loop. A cached coin
+    // without a price_scale yet still goes through the upsert in keysFor, so it counts as new.
+    private Mono<Map<String, Integer>> coinKeys(List<PriceTick> ticks) {
+        boolean allKnown = ticks.stream().allMatch(t -> coins.find(t.coinId()).filter(c -> c.priceScale() != null).isPresent()
+            && (schema == PriceSchema.V1 || dimensions.cached(t.source(), t.symbol(), t.vsCurrency())));
+        if (allKnown) {
+            return Mono.just(coins.keysFor(ticks));
+        }
+        return Mono.fromCallable(() -> {
+            if (schema == PriceSchema.V2) {
+                ticks.forEach(t -> {
+                    dimensions.sourceKey(t.source());
+                    dimensions.symbolKey(t.symbol());
+                    dimensions.currencyKey(t.vsCurrency());
+                });
+            }
+            return coins.keysFor(ticks);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Integer> insert(Connection conn, List<PriceTick> ticks, Map<String, Integer> keys) {
+        if (schema == PriceSchema.V2) {
+            return insertV2(conn, ticks, keys);
+        }
+        Statement st = conn.createStatement(INSERT);
+        for (int i = 0; i < ticks.size(); i++) {
+            if (i > 0) {
+                st.add();
+            }
+            PriceTick t = ticks.get(i);
+            st.bind(0, t.source());
+            st.bind(1, t.symbol());
+            bind(st, 2, keys.get(t.coinId()), Integer.class);
+            st.bind(3, t.vsCurrency());
+            long fixed = storage.fixedPrice(t);
+            bind(st, 4, PriceStorage.numericPrice(t, fixed), BigDecimal.class);
+            bind(st, 5, PriceStorage.boxed(fixed), Long.class);
+            bind(st, 6, t.marketCap(), Double.class);
+            bind(st, 7, t.pctChange24h(), Double.class);
+            st.bind(8, OffsetDateTime.ofInstant(t.tsBucket(), ZoneOffset.UTC));
+        }
+        return rowsUpdated(st);
+    }
+
+    private Mono<Integer> insertV2(Connection conn, List<PriceTick> ticks, Map<String, Integer> keys) {
+        Statement st = conn.createStatement(INSERT_V2);
+        for (int i = 0; i < ticks.size(); i++) {
+            if (i > 0) {
+                st.add();
+            }
+            PriceTick t = ticks.get(i);
+            long fixed = storage.fixedPrice(t);
+            st.bind(0, OffsetDateTime.ofInstant(t.tsBucket(), ZoneOffset.UTC));
+            bind(st, 1, PriceStorage.boxed(fixed), Long.class);
+            bind(st, 2, t.marketCap(), Double.class);
+            bind(st, 3, t.pctChange24h(), Double.class);
+            bind(st, 4, keys.get(t.coinId()), Integer.class);
+            st.bind(5, dimensions.sourceKey(t.source()));
+            st.bind(6, dimensions.currencyKey(t.vsCurrency()));
+            bind(st, 7, PriceStorage.numericPrice(t, fixed), BigDecimal.class);
+            st.bind(8, dimensions.symbolKey(t.symbol()));
+        }
+        return rowsUpdated(st);
+    }
+
+    // Same upsert as PriceRepository.upsertLatest: newest tick per series, in key order
+    private static Mono<Integer> upsertLatest(Connection conn, List<PriceTick> ticks) {
+        Map<List<String>, PriceTick> newest = new TreeMap<>(Comparator.comparing((List<String> k) -> k.get(0))
+            .thenComparing(k -> k.get(1))
+            .thenComparing(k -> k.get(2)));
+        for (PriceTick t : ticks) {
+            if (t.hasPrice()) {
+                newest.merge(List.of(t.source(), t.symbol(), t.vsCurrency()), t,
+                    (a, b) -> b.tsBucket().isAfter(a.tsBucket()) ? b : a);
+            }
+        }
+        if (newest.isEmpty()) {
+            return Mono.just(0);
+        }
+        Statement st = conn.createStatement(UPSERT_LATEST.sql());
+        boolean first = true;
+        for (PriceTick t : newest.values()) {
+            if (!first) {
+                st.add();
+            }
+            first = false;
+            Map<String, Object> params = new LinkedHashMap<>();
+            params.put("source", t.source());
+            params.put("symbol", t.symbol());
+            params.put("vs_currency", t.vsCurrency());
+            params.put("price", FixedPoint.toBigDecimal(t.priceFp(), t.priceScale()));
+            params.put("market_cap", t.marketCap());
+            params.put("pct_change_24h", t.pctChange24h());
+            params.put("ts_bucket", OffsetDateTime.ofInstant(t.tsBucket(), ZoneOffset.UTC));
+            for (int i = 0; i < UPSERT_LATEST.names().size(); i++) {
+                String name = UPSERT_LATEST.names().get(i);
+                bind(st, i, params.get(name), name.equals("price") ? BigDecimal.class : Double.class);
+            }
+        }
+        return rowsUpdated(st);
+    }
+
+    // Same rollups as PriceSink, series by series and finest resolution first
+    private Mono<Void> refreshCandles(Connection conn, List<PriceTick> ticks) {
+        Map<List<String>, List<PriceTick>> bySeries = ticks.stream()
+            .collect(Collectors.groupingBy(t -> List.of(t.source(), t.vsCurrency()), LinkedHashMap::new, Collectors.toList()));
+        return Flux.fromIterable(bySeries.entrySet())
+            .concatMap(series -> Flux.fromArray(CandleResolution.values())
+                .concatMap(resolution -> rollup(conn, resolution, series.getKey().get(0), series.getKey().get(1), series.getValue())))
+            .then();
+    }
+
+    private Mono<Integer> rollup(Connection conn, CandleResolution resolution, String source, String vsCurrency, List<PriceTick> ticks) {
+        Set<String> symbols = ticks.stream().map(PriceTick::symbol).collect(Collectors.toCollection(TreeSet::new));
+        Instant from = ticks.stream().map(PriceTick::tsBucket).min(Instant::compareTo).orElseThrow();
+        Instant to = ticks.stream().map(PriceTick::tsBucket).max(Instant::compareTo).orElseThrow();
+
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("resolution", resolution.label());
+        params.put("step", resolution.step().toSeconds() + " seconds");
+        params.put("source", source);
+        params.put("vs_currency", vsCurrency);
+        params.put("symbols", symbols.toArray(String[]::new));
+        params.put("from", OffsetDateTime.ofInstant(CandleRepository.floor(from, resolution), ZoneOffset.UTC));
+        params.put("to", OffsetDateTime.ofInstant(CandleRepository.floor(to, resolution).plus(resolution.step()), ZoneOffset.UTC));
+
+        int ordinal = resolution.ordinal();
+        Positional sql = rollupFromPrices;
+        if (ordinal > 0) {
+            params.put("child", CandleResolution.values()[ordinal - 1].label());
+            sql = ROLLUP_FROM_CANDLES;
+        }
+        Statement st = conn.createStatement(sql.sql());
+        for (int i = 0; i < sql.names().size(); i++) {
+            st.bind(i, params.get(sql.names().get(i)));
+        }
+        return rowsUpdated(st);
+    }
+
+    private static Mono<Integer> rowsUpdated(Statement st) {
+        return Flux.from(st.execute())
+            .concatMap(Result::getRowsUpdated)
+            .reduce(0L, Long::sum)
+            .map(Long::intValue);
+    }
+
+    private static void bind(Statement st, int index, Object value, Class<?> type) {
+        if (value == null) {
+            st.bindNull(index, type);
+        } else {
+            st.bind(index, value);
+        }
+    }
+
+    // A NamedParameterJdbcTemplate statement rewritten for the Postgres driver's $n markers.
+    // Collections are bound as arrays, so IN (:x) becomes = ANY(:x) first.
+    record Positional(String sql, List<String> names) {
+
+        private static final Pattern NAMED = Pattern.compile("(?<!:):([a-z_]+)");
+
+        static Positional of(String named) {
+            String sql = named.replaceAll("IN \\(:([a-z_]+)\\)", "= ANY(:$1)");
+            List<String> names = new ArrayList<>();
+            Matcher m = NAMED.matcher(sql);
+            StringBuilder out = new StringBuilder();
+            while (m.find()) {
+                int index = names.indexOf(m.group(1));
+                if (index < 0) {
+                    names.add(m.group(1));
+                    index = names.size() - 1;
+                }
+                m.appendReplacement(out, "\\$" + (index + 1));
+            }
+            m.appendTail(out);
+            return new Positional(out.toString(), List.copyOf(names));
+        }
+    }
+}
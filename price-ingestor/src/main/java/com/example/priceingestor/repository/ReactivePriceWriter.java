@@ -0,0 +1,16 @@
+package com.example.priceingestor.repository;
+
+import com.example.priceingestor.model.PriceTick;
+import java.util.List;
+import reactor.core.publisher.Mono;
+
+// Non-blocking counterpart of PriceWriter, selected with ingestor.persistence=r2dbc.
+// One call persists the batch and the candles derived from it in a single transaction
+// (what PriceSink does for the JDBC writers), without holding a thread while the database works.
+public interface ReactivePriceWriter {
+
+    String name();
+
+    // Emits the number of rows actually inserted once the transaction has committed
+    Mono<Integer> write(List<PriceTick> ticks);
+}
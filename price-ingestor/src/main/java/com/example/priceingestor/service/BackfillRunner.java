@@ -0,0 +1,67 @@
+package com.example.priceingestor.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Backfill mode: runs one backfill job on a background thread at startup. Combine with
+// ingestor.live.enabled=false to run a dedicated seeding process, or leave live ingestion on
+// and let the request budget keep live calls ahead of the backfill.
+@Component
+@ConditionalOnProperty(name = "ingestor.backfill.enabled", havingValue = "true")
+public class BackfillRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillRunner.class);
+
+    private final BackfillService backfill;
+    private final List<String> coins;
+    private final List<String> vsCurrencies;
+    private final String from;
+    private final String to;
+
+    public BackfillRunner(
+        BackfillService backfill,
+        @Value("${ingestor.backfill.coins}") String coins,
+        @Value("${ingestor.vs-currencies}") List<String> vsCurrencies,
+        @Value("${ingestor.backfill.from}") String from,
+        @Value("${ingestor.backfill.to}") String to
+    ) {
+        this.backfill = backfill;
+        this.coins = Arrays.stream(coins.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.vsCurrencies = vsCurrencies;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (coins.isEmpty()) {
+            throw new IllegalArgumentException("ingestor.backfill.coins must list at least one coin id");
+        }
+        Instant start = Instant.parse(from);
+        Instant end = to.isBlank() ? Instant.now().truncatedTo(ChronoUnit.MINUTES) : Instant.parse(to);
+
+        Thread thread = new Thread(() -> {
+            long t0 = System.nanoTime();
+            try {
+                int rows = 0;
+                // one currency after another; each already runs its windows concurrently
+                for (String vsCurrency : vsCurrencies) {
+                    rows += backfill.run(coins, vsCurrency, start, end);
+                }
+                log.info("backfill {}..{} finished: {} rows in {}s", start, end, rows, (System.nanoTime() - t0) / 1_000_000_000);
+            } catch (Exception e) {
+                log.error("backfill {}..{} failed; rerun to resume from the last checkpoint", start, end, e);
+            }
+        }, "backfill");
+        thread.start();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.CoinListing;
+import com.example.priceingestor.model.MarketChart;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.BackfillRepository;
+import com.example.priceingestor.repository.CoinRepository;
+import com.example.priceingestor.repository.PriceWriter;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Loads history from market_chart/range into prices.
+// [from, to) is split per coin into windows aligned to multiples of window-hours since the epoch
+// (so runs with different `from`s share checkpoints), fetched `concurrency` at a time at
+// BACKFILL priority, so live snapshot calls keep precedence in the shared request budget. Each
+// window's rows and its backfill_checkpoints row commit together; a window is skipped only when its
+// checkpoint reaches the window's full end, so a killed job picks up where it stopped and a window
+// cut short by an earlier `to` is fetched again in full. A window that returned no points is not
+// checkpointed, so the next run asks again. The partitions covering [from, to) are created
+// up front; a window that still finds none fails the whole run rather than being retried quietly.
+// Symbols and names come from the coin cache; /coins/list is downloaded only for coins it lacks.
+@Service
+public class BackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackfillService.class);
+
+    private final MarketClient client;
+    private final BackfillRepository checkpoints;
+    private final CoinRepository coins;
+    private final PriceSink sink;
+    private final PartitionManager partitions;
+    private final PriceWriter writer;
+    private final TransactionTemplate tx;
+    private final String source;
+    private final Duration window;
+    private final int concurrency;
+
+    public BackfillService(
+        MarketClient client,
+        BackfillRepository checkpoints,
+        CoinRepository coins,
+        PriceSink sink,
+        PartitionManager partitions,
+        PriceWriters writers,
+        TransactionTemplate tx,
+        @Value("${ingestor.source}") String source,
+        @Value("${ingestor.backfill.writer}") String writerName,
+        @Value("${ingestor.backfill.window-hours}") long windowHours,
+        @Value("${ingestor.backfill.concurrency}") int concurrency
+    ) {
+        this.client = client;
+        this.checkpoints = checkpoints;
+        this.coins = coins;
+        this.sink = sink;
+        this.partitions = partitions;
+        this.writer = writers.get(writerName);
+        this.tx = tx;
+        this.source = source;
+        this.window = Duration.ofHours(windowHours);
+        this.concurrency = concurrency;
+    }
+
+    // Returns the number of rows inserted
+    public int run(List<String> coinIds, String vsCurrency, Instant from, Instant to) {
+        Map<String, CoinListing> listings = listings(coinIds);
+        if (listings.isEmpty()) {
+            log.warn("backfill: none of {} are listed upstream", coinIds);
+            return 0;
+        }
+
+        Instant alignedFrom = align(from);
+        List<Window> pending = new ArrayList<>();
+        for (CoinListing coin : listings.values()) {
+            Map<Instant, Instant> done = checkpoints.completedWindows(source, coin.id(), vsCurrency);
+            for (Instant start = alignedFrom; start.isBefore(to); start = start.plus(window)) {
+                Instant fullEnd = start.plus(window);
+                Instant doneUntil = done.get(start);
+                if (doneUntil == null || doneUntil.isBefore(fullEnd)) {
+                    pending.add(new Window(coin, start, fullEnd.isBefore(to) ? fullEnd : to));
+                }
+            }
+        }
+        log.info("backfill: {} coins, {} windows pending", listings.size(), pending.size());
+        if (!pending.isEmpty()) {
+            partitions.ensureRange(alignedFrom, to);
+        }
+
+        Integer inserted = Flux.fromIterable(pending)
+            .flatMap(w -> client.marketChartRange(w.coin().id(), vsCurrency, w.start(), w.end())
+                .defaultIfEmpty(new MarketChart(List.of(), List.of(), List.of()))
+                .publishOn(Schedulers.boundedElastic())
+                .map(chart -> persist(w, vsCurrency, chart))
+                .onErrorResume(e -> !missingPartition(e), e -> {
+                    // left without a checkpoint, so the next run retries it
+                    log.warn("backfill window {} {}..{} failed: {}", w.coin().id(), w.start(), w.end(), e.toString());
+                    return Mono.just(0);
+                }), concurrency)
+            .reduce(0, Integer::sum)
+            .block();
+        return inserted == null ? 0 : inserted;
+    }
+
+    private Map<String, CoinListing> listings(List<String> coinIds) {
+        Map<String, CoinListing> listings = new LinkedHashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String id : coinIds) {
+            coins.find(id).ifPresentOrElse(
+                c -> listings.put(id, new CoinListing(c.coinId(), c.symbol(), c.name())),
+                () -> unknown.add(id));
+        }
+        if (!unknown.isEmpty()) {
+            Map<String, CoinListing> upstream = client.coinsList()
+                .filter(c -> unknown.contains(c.id()))
+                .collectMap(CoinListing::id, Function.identity())
+                .block();
+            if (upstream != null) {
+                listings.putAll(upstream);
+            }
+        }
+        return listings;
+    }
+
+    // The start of the window-hours window since the epoch that contains `at`
+    private Instant align(Instant at) {
+        long millis = window.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(at.toEpochMilli(), millis) * millis);
+    }
+
+    // History for one coin over [from, to), minute-bucketed; also used to repair gaps
+    public Mono<List<PriceTick>> fetchHistory(
+        String tickSource, String coinId, String symbol, String name, String vsCurrency, Instant from, Instant to
+    ) {
+        return client.marketChartRange(coinId, vsCurrency, from, to)
+            .map(chart -> toTicks(tickSource, vsCurrency, new CoinListing(coinId, symbol, name), chart))
+            .defaultIfEmpty(List.of());
+    }
+
+    private int persist(Window w, String vsCurrency, MarketChart chart) {
+        List<PriceTick> ticks = toTicks(source, vsCurrency, w.coin(), chart);
+        if (ticks.isEmpty()) {
+            // An empty answer may be upstream lag or a transient miss; leave it for the next run
+            log.debug("backfill window {} {}..{} returned no points", w.coin().id(), w.start(), w.end());
+            return 0;
+        }
+        Integer inserted = tx.execute(status -> {
+            int n = sink.persist(writer, ticks);
+            checkpoints.markDone(source, w.coin().id(), vsCurrency, w.start(), w.end(), n);
+            return n;
+        });
+        return inserted == null ? 0 : inserted;
+    }
+
+    // "no partition of relation ... found for row" (check_violation): retrying cannot help
+    static boolean missingPartition(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && "23514".equals(sql.getSQLState())
+                && sql.getMessage() != null && sql.getMessage().contains("no partition")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Points are bucketed to the minute like live rows; market caps are matched by timestamp
+    private static List<PriceTick> toTicks(String source, String vsCurrency, CoinListing coin, MarketChart chart) {
+        if (chart.prices() == null) {
+            return List.of();
+        }
+        Map<Long, Double> caps = new HashMap<>();
+        if (chart.market_caps() != null) {
+            chart.market_caps().forEach(p -> caps.put((long) p[0], p[1]));
+        }
+        return chart.prices().stream()
+            .map(p -> new PriceTick(source, coin.symbol(), coin.id(), coin.name(), vsCurrency, p[1], caps.get((long) p[0]), null,
+                Instant.ofEpochMilli((long) p[0]).truncatedTo(ChronoUnit.MINUTES)))
+            .collect(Collectors.toList());
+    }
+
+    private record Window(CoinListing coin, Instant start, Instant end) {}
+}
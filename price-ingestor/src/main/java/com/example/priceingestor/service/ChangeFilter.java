@@ -0,0 +1,158 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.LastPrice;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.HeartbeatRepository;
+import com.example.priceingestor.repository.PriceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Drops ticks whose price, market cap and 24h change equal the last written row for the same
+// (source, symbol, vs_currency). A row is still forced out every max-skip-minutes, so a reader doing
+// last-observation-carried-forward (PriceRepository.findPriceAt) never has to look back further.
+// Modes: off, skip (just drop), heartbeat (drop, record one price_heartbeats row per batch for the
+// source, and a price_unchanged marker per dropped tick, which tells readers that this symbol was
+// observed unchanged even though no row was written).
+@Component
+public class ChangeFilter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFilter.class);
+
+    private final PriceRepository prices;
+    private final HeartbeatRepository heartbeats;
+    private final MeterRegistry registry;
+    private final String mode;
+    private final Duration maxSkip;
+    private final Duration warmStart;
+    private final Map<Key, LastPrice> last = new ConcurrentHashMap<>();
+
+    public ChangeFilter(
+        PriceRepository prices,
+        HeartbeatRepository heartbeats,
+        MeterRegistry registry,
+        @Value("${ingestor.change-filter.mode}") String mode,
+        @Value("${ingestor.change-filter.max-skip-minutes}") long maxSkipMinutes,
+        @Value("${ingestor.change-filter.warm-start-hours}") long warmStartHours
+    ) {
+        if (!List.of("off", "skip", "heartbeat").contains(mode)) {
+            throw new IllegalArgumentException("ingestor.change-filter.mode must be off, skip or heartbeat: " + mode);
+        }
+        this.prices = prices;
+        this.heartbeats = heartbeats;
+        this.registry = registry;
+        this.mode = mode;
+        this.maxSkip = Duration.ofMinutes(maxSkipMinutes);
+        this.warmStart = Duration.ofHours(warmStartHours);
+    }
+
+    public boolean enabled() {
+        return !"off".equals(mode);
+    }
+
+    // commit() writes price_heartbeats rows (over JDBC) in this mode
+    public boolean recordsHeartbeats() {
+        return "heartbeat".equals(mode);
+    }
+
+    public Duration maxSkip() {
+        return maxSkip;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled()) {
+            return;
+        }
+        List<LastPrice> latest = prices.findLatestSince(Instant.now().minus(warmStart));
+        latest.forEach(p -> last.put(new Key(p.source(), p.symbol(), p.vsCurrency()), p));
+        log.info("change filter warm-started with {} symbols", latest.size());
+    }
+
+    // Returns the ticks that must be written
+    public List<PriceTick> filter(List<PriceTick> batch) {
+        if (!enabled()) {
+            return batch;
+        }
+        List<PriceTick> changed = new ArrayList<>(batch.size());
+        for (PriceTick t : batch) {
+            LastPrice prev = last.get(new Key(t.source(), t.symbol(), t.vsCurrency()));
+            if (prev == null
+                || !prev.tsBucket().plus(maxSkip).isAfter(t.tsBucket())
+                // both sides are normalized fixed point, so equal prices compare equal exactly
+                || prev.priceFp() != t.priceFp() || prev.priceScale() != t.priceScale()
+                || !Objects.equals(prev.marketCap(), t.marketCap())
+                || !Objects.equals(prev.pctChange24h(), t.pctChange24h())) {
+                changed.add(t);
+            }
+        }
+        if (changed.size() < batch.size()) {
+            Map<String, Integer> suppressed = new HashMap<>();
+            batch.forEach(t -> suppressed.merge(t.source(), 1, Integer::sum));
+            changed.forEach(t -> suppressed.merge(t.source(), -1, Integer::sum));
+            suppressed.forEach((source, n) -> Counter.builder("ingestor.change_filter.suppressed")
+                .description("Ticks not written because nothing changed since the last row")
+                .tag("source", source)
+                .register(registry)
+                .increment(n));
+        }
+        return changed;
+    }
+
+    // Called once `written` is safely persisted; only then does it become the comparison baseline
+    public void commit(List<PriceTick> observed, List<PriceTick> written) {
+        baseline(written);
+        recordHeartbeats(observed, written);
+    }
+
+    // The baseline half of commit(), for writers that persist later than they accept (write-behind,
+    // which is why heartbeat mode refuses it)
+    public void baseline(List<PriceTick> written) {
+        if (!enabled()) {
+            return;
+        }
+        for (PriceTick t : written) {
+            last.put(new Key(t.source(), t.symbol(), t.vsCurrency()), new LastPrice(
+                t.source(), t.symbol(), t.vsCurrency(), t.priceFp(), t.priceScale(), t.marketCap(), t.pctChange24h(), t.tsBucket()));
+        }
+    }
+
+    // The heartbeat half of commit(): `observed` were seen upstream, `written` of them are rows
+    private void recordHeartbeats(List<PriceTick> observed, List<PriceTick> written) {
+        if ("heartbeat".equals(mode)) {
+            Map<BucketKey, Integer> observedPerBucket = countPerBucket(observed);
+            Map<BucketKey, Integer> writtenPerBucket = countPerBucket(written);
+            observedPerBucket.forEach((key, n) ->
+                heartbeats.record(key.source(), key.tsBucket(), n, n - writtenPerBucket.getOrDefault(key, 0)));
+            Set<PriceTick> kept = new HashSet<>(written);
+            List<PriceTick> suppressed = observed.stream().filter(t -> !kept.contains(t)).toList();
+            if (!suppressed.isEmpty()) {
+                heartbeats.recordUnchanged(suppressed);
+            }
+        }
+    }
+
+    private static Map<BucketKey, Integer> countPerBucket(List<PriceTick> ticks) {
+        Map<BucketKey, Integer> counts = new HashMap<>();
+        ticks.forEach(t -> counts.merge(new BucketKey(t.source(), t.tsBucket()), 1, Integer::sum));
+        return counts;
+    }
+
+    private record Key(String source, String symbol, String vsCurrency) {}
+
+    private record BucketKey(String source, Instant tsBucket) {}
+}
@@ -0,0 +1,71 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.CoinListing;
+import com.example.priceingestor.repository.CoinRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Refreshes the coins table and the ranked universe once per refresh-hours from a /coins/markets
+// walk at METADATA priority, so live cycles can poll prices alone through /simple/price.
+// Every replica checks every check-interval-ms; whichever finds the refresh stale performs it and
+// the others pick the new ranking up from the table on their next check.
+@Component
+public class CoinMetadataRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(CoinMetadataRefresher.class);
+
+    private final CoinRepository coins;
+    private final MarketClient client;
+    private final String vsCurrency;
+    private final int perPage;
+    private final int pages;
+    private final Duration refreshEvery;
+
+    public CoinMetadataRefresher(
+        CoinRepository coins,
+        MarketClient client,
+        @Value("${ingestor.vs-currencies}") List<String> vsCurrencies,
+        @Value("${ingestor.universe}") String universe,
+        @Value("${ingestor.per-page}") int perPage,
+        @Value("${ingestor.max-pages}") int maxPages,
+        @Value("${ingestor.coins.refresh-hours}") long refreshHours
+    ) {
+        this.coins = coins;
+        this.client = client;
+        this.vsCurrency = vsCurrencies.get(0);
+        this.perPage = perPage;
+        this.pages = "all".equals(universe) ? maxPages : 1;
+        this.refreshEvery = Duration.ofHours(refreshHours);
+    }
+
+    @Scheduled(fixedDelayString = "${ingestor.coins.check-interval-ms}")
+    public void refreshIfStale() {
+        Optional<Instant> last = coins.lastRefresh();
+        if (last.isPresent() && last.get().plus(refreshEvery).isAfter(Instant.now())) {
+            coins.reloadUniverse();
+            return;
+        }
+        try {
+            List<CoinListing> ranked = client.marketsForListing(vsCurrency, perPage, pages)
+                .map(m -> new CoinListing(m.id(), m.symbol(), m.name()))
+                .collectList()
+                .block();
+            if (ranked == null || ranked.isEmpty()) {
+                log.warn("coin refresh: upstream returned no coins, keeping the previous universe");
+                return;
+            }
+            coins.replaceUniverse(ranked);
+            log.info("coin refresh: universe of {} coins", ranked.size());
+        } catch (Exception e) {
+            log.warn("coin refresh failed, retrying on the next check: {}", e.toString());
+        }
+    }
+}
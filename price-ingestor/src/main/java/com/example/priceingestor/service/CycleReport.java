@@ -0,0 +1,21 @@
+package com.example.priceingestor.service;
+
+import java.time.Instant;
+
+// Outcome of one ingestion cycle, used for logging and metrics.
+// Stages overlap, so only the time spent inside DB writes is broken out (per-stage times are in
+// the ingestor.stage.* meters).
+public record CycleReport(
+    Instant bucket,
+    int fetched,
+    int inserted,
+    int rejected,
+    int batches,
+    long writeMillis,
+    long totalMillis
+) {
+
+    public long rowsPerSecond() {
+        return writeMillis == 0 ? fetched * 1000L : fetched * 1000L / writeMillis;
+    }
+}
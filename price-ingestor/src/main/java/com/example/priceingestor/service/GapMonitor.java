@@ -0,0 +1,197 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.PriceGap;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.GapRepository;
+import com.example.priceingestor.repository.PriceWriter;
+import com.example.priceingestor.source.SourceAdapter;
+import com.example.priceingestor.source.TierPlanner;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Finds missing minute buckets and queues targeted re-fetches for them.
+//
+// Every scan looks at the last `lookback` of prices for each enabled source and refreshes the
+// per-source gauges: open gaps, outage minutes (no rows and no heartbeat), failed-fetch minutes (some
+// page, batch or currency of the cycle failed, see failed_fetches) and freshness (age of the newest
+// bucket). Interior gaps per symbol are only recorded in price_gaps when they overlap an outage or a
+// failed-fetch minute; a symbol missing while every unit of its source was fetched was simply not
+// returned (it left the top-N universe for a while), and there is nothing to repair. The repair
+// pass re-fetches each open
+// gap's window from market_chart/range at BACKFILL priority. That endpoint only serves the client's
+// own source, and only at its own granularity (about 5 minutes for a window of a day or less), so a
+// gap is judged repaired once every full upstream step inside it has a row. Gaps of other sources,
+// and gaps shorter than one upstream step, are marked unrepairable without spending a call; so is a
+// gap still not covered after max-attempts, so readers see a known hole rather than a silent one.
+@Component
+@ConditionalOnProperty(name = "ingestor.gaps.enabled", havingValue = "true")
+public class GapMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(GapMonitor.class);
+
+    private final GapRepository gaps;
+    private final MarketClient client;
+    private final BackfillService backfill;
+    private final PriceSink sink;
+    private final PartitionManager partitions;
+    private final PriceWriter writer;
+    private final ChangeFilter changeFilter;
+    private final Optional<TierPlanner> tiers;
+    private final List<String> sources;
+    private final Duration lookback;
+    private final int repairBatch;
+    private final int maxAttempts;
+    private final Map<String, AtomicLong> openGaps = new HashMap<>();
+    private final Map<String, AtomicLong> outageMinutes = new HashMap<>();
+    private final Map<String, AtomicLong> failedFetchMinutes = new HashMap<>();
+    private final Map<String, AtomicLong> freshnessSeconds = new HashMap<>();
+
+    public GapMonitor(
+        GapRepository gaps,
+        MarketClient client,
+        BackfillService backfill,
+        PriceSink sink,
+        PartitionManager partitions,
+        PriceWriters writers,
+        ChangeFilter changeFilter,
+        Optional<TierPlanner> tiers,
+        ObjectProvider<SourceAdapter> adapters,
+        MeterRegistry registry,
+        @Value("${ingestor.writer}") String writerName,
+        @Value("${ingestor.gaps.lookback-minutes}") long lookbackMinutes,
+        @Value("${ingestor.gaps.repair-batch}") int repairBatch,
+        @Value("${ingestor.gaps.max-attempts}") int maxAttempts
+    ) {
+        this.gaps = gaps;
+        this.client = client;
+        this.backfill = backfill;
+        this.sink = sink;
+        this.partitions = partitions;
+        this.writer = writers.get(writerName);
+        this.changeFilter = changeFilter;
+        this.tiers = tiers;
+        this.sources = adapters.orderedStream().map(SourceAdapter::source).distinct().toList();
+        this.lookback = Duration.ofMinutes(lookbackMinutes);
+        this.repairBatch = repairBatch;
+        this.maxAttempts = maxAttempts;
+        for (String source : sources) {
+            Gauge.builder("ingestor.gaps.open", gauge(openGaps, source), AtomicLong::get).tag("source", source).register(registry);
+            Gauge.builder("ingestor.gaps.outage_minutes", gauge(outageMinutes, source), AtomicLong::get).tag("source", source).register(registry);
+            Gauge.builder("ingestor.gaps.failed_fetch_minutes", gauge(failedFetchMinutes, source), AtomicLong::get).tag("source", source).register(registry);
+            Gauge.builder("ingestor.freshness.seconds", gauge(freshnessSeconds, source), AtomicLong::get).tag("source", source).register(registry);
+        }
+    }
+
+    @Scheduled(
+        fixedDelayString = "${ingestor.gaps.scan-interval-ms}",
+        initialDelayString = "${ingestor.gaps.scan-interval-ms}")
+    public void scanAndRepair() {
+        for (String source : sources) {
+            scan(source);
+            repair(source);
+            openGaps.get(source).set(gaps.countOpen(source));
+        }
+    }
+
+    private void scan(String source) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        // the current and previous minute may still be in flight
+        Instant to = now.minus(Duration.ofMinutes(2));
+        Instant from = to.minus(lookback);
+
+        // with the change filter on, unchanged symbols legitimately skip up to max-skip minutes
+        Duration tolerance = changeFilter.enabled() ? changeFilter.maxSkip() : Duration.ofMinutes(1);
+        // and with polling tiers, slow coins are only sampled once per sweep
+        if (tiers.isPresent() && source.equals(client.source()) && tiers.get().maxInterval().compareTo(tolerance) > 0) {
+            tolerance = tiers.get().maxInterval();
+        }
+        List<Instant> outages = gaps.findSourceOutageMinutes(source, from, to);
+        List<Instant> failed = gaps.findFailedFetchMinutes(source, from, to);
+        List<Instant> lost = new ArrayList<>(outages);
+        lost.addAll(failed);
+        List<PriceGap> found = lost.isEmpty() ? List.of() : gaps.findGaps(source, from, to, tolerance).stream()
+            .filter(gap -> overlapsAny(gap, lost))
+            .toList();
+        int queued = found.isEmpty() ? 0 : gaps.enqueue(found);
+
+        outageMinutes.get(source).set(outages.size());
+        failedFetchMinutes.get(source).set(failed.size());
+        freshnessSeconds.get(source).set(gaps.latestBucket(source, from)
+            .map(latest -> Duration.between(latest, Instant.now()).toSeconds())
+            .orElse(lookback.toSeconds()));
+        if (queued > 0) {
+            log.warn("found {} new gaps for {} between {} and {}", queued, source, from, to);
+        }
+    }
+
+    private void repair(String source) {
+        for (PriceGap gap : gaps.findOpen(source, repairBatch)) {
+            // fetch one minute either side so coarse-grained points at the edges are included
+            Instant from = gap.gapStart().minus(Duration.ofMinutes(1));
+            Instant to = gap.gapEnd().plus(Duration.ofMinutes(1));
+            Duration step = upstreamStep(Duration.between(from, to));
+            Duration length = Duration.between(gap.gapStart(), gap.gapEnd()).plusMinutes(1);
+            if (!source.equals(client.source()) || length.compareTo(step) < 0) {
+                // nothing upstream can fill it: no history for this source, or finer than its points
+                gaps.updateStatus(gap, "unrepairable");
+                continue;
+            }
+            try {
+                List<PriceTick> ticks = backfill.fetchHistory(gap.source(), gap.coinId(), gap.symbol(), gap.name(),
+                        gap.vsCurrency(), from, to)
+                    .block();
+                List<PriceTick> inside = ticks == null ? List.of() : ticks.stream()
+                    .filter(t -> !t.tsBucket().isBefore(gap.gapStart()) && !t.tsBucket().isAfter(gap.gapEnd()))
+                    .toList();
+                if (!inside.isEmpty()) {
+                    partitions.ensureRange(gap.gapStart(), gap.gapEnd().plus(Duration.ofMinutes(1)));
+                    sink.persist(writer, inside);
+                }
+            } catch (RuntimeException e) {
+                log.warn("repair of {} {}/{} at {} failed: {}",
+                    gap.source(), gap.symbol(), gap.vsCurrency(), gap.gapStart(), e.toString());
+            }
+            String status;
+            if (gaps.countStillMissing(gap, step) <= 0) {
+                status = "repaired";
+            } else {
+                status = gap.attempts() + 1 >= maxAttempts ? "unrepairable" : "open";
+            }
+            gaps.updateStatus(gap, status);
+        }
+    }
+
+    // Whether any minute of the gap is one in which data may have been lost (outage or failed fetch)
+    static boolean overlapsAny(PriceGap gap, List<Instant> minutes) {
+        return minutes.stream().anyMatch(m -> !m.isBefore(gap.gapStart()) && !m.isAfter(gap.gapEnd()));
+    }
+
+    // Spacing of market_chart/range points, which CoinGecko picks from the length of the range
+    static Duration upstreamStep(Duration range) {
+        if (range.compareTo(Duration.ofDays(1)) <= 0) {
+            return Duration.ofMinutes(5);
+        }
+        return range.compareTo(Duration.ofDays(90)) <= 0 ? Duration.ofHours(1) : Duration.ofDays(1);
+    }
+
+    private static AtomicLong gauge(Map<String, AtomicLong> gauges, String source) {
+        return gauges.computeIfAbsent(source, s -> new AtomicLong());
+    }
+}
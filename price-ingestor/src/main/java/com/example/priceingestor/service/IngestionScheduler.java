@@ -0,0 +1,140 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.replay.ReplayServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+// Long-running driver for IngestionService.
+// Ticks are aligned to multiples of ingestor.period-ms since the epoch, so with the default
+// 60s period every cycle starts on a ts_bucket minute boundary. Cycles run on a single thread
+// and the next tick is only scheduled once the current one has finished, so a slow cycle can
+// never overlap the next one. If a cycle overruns, the ticks it swallowed are counted as missed
+// and one catch-up cycle runs immediately for the current bucket instead of queueing them all.
+// While a recording is replayed, buckets follow the replay clock instead of the wall clock.
+@Component
+@ConditionalOnProperty(name = "ingestor.live.enabled", havingValue = "true", matchIfMissing = true)
+public class IngestionScheduler implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionScheduler.class);
+
+    private final IngestionService ingestion;
+    private final long periodMs;
+    private final Clock clock;
+    private final Timer cycleTimer;
+    private final Counter missedTicks;
+    private final Counter failedCycles;
+    private final Optional<ReplayServer> replay;
+
+    private ScheduledThreadPoolExecutor executor;
+    private volatile boolean running;
+
+    public IngestionScheduler(
+        IngestionService ingestion,
+        MeterRegistry registry,
+        Optional<ReplayServer> replay,
+        @Value("${ingestor.period-ms}") long periodMs
+    ) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("ingestor.period-ms must be positive: " + periodMs);
+        }
+        this.ingestion = ingestion;
+        this.periodMs = periodMs;
+        this.clock = Clock.systemUTC();
+        this.replay = replay;
+        this.cycleTimer = Timer.builder("ingestor.cycle")
+            .description("Wall-clock time of one ingestion cycle")
+            .register(registry);
+        this.missedTicks = Counter.builder("ingestor.cycle.missed")
+            .description("Ticks skipped because a previous cycle overran")
+            .register(registry);
+        this.failedCycles = Counter.builder("ingestor.cycle.failed")
+            .register(registry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        executor = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "ingestor-scheduler"));
+        // A pending (not yet started) tick is simply dropped on shutdown
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        running = true;
+        // The current bucket has not been ingested yet, so the first cycle runs right away
+        long current = floorTick(clock.millis());
+        executor.execute(() -> runTick(current));
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                // Let an in-flight cycle finish its writes
+                if (!executor.awaitTermination(periodMs, TimeUnit.MILLISECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runTick(long tick) {
+        Instant bucket = replay.map(r -> r.replayTime(Instant.ofEpochMilli(tick))).orElse(Instant.ofEpochMilli(tick));
+        long lagMs = clock.millis() - tick;
+        try {
+            CycleReport report = cycleTimer.recordCallable(() -> ingestion.runCycle(bucket));
+            log.info("cycle bucket={} fetched={} inserted={} rejected={} batches={} writeMs={} rowsPerSec={} totalMs={} lagMs={}",
+                bucket, report.fetched(), report.inserted(), report.rejected(), report.batches(),
+                report.writeMillis(), report.rowsPerSecond(), report.totalMillis(), lagMs);
+        } catch (Exception e) {
+            failedCycles.increment();
+            log.error("cycle bucket={} failed", bucket, e);
+        } finally {
+            if (running) {
+                scheduleAfter(tick);
+            }
+        }
+    }
+
+    private void scheduleAfter(long tick) {
+        long now = clock.millis();
+        long next = tick + periodMs;
+        if (next > now) {
+            executor.schedule(() -> runTick(next), next - now, TimeUnit.MILLISECONDS);
+            return;
+        }
+        // Overran: skip straight to the bucket we are in now rather than piling up stale ticks
+        long current = floorTick(now);
+        long missed = (current - tick) / periodMs - 1;
+        if (missed > 0) {
+            missedTicks.increment(missed);
+            log.warn("cycle for {} overran, skipping {} tick(s)", Instant.ofEpochMilli(tick), missed);
+        }
+        executor.execute(() -> runTick(current));
+    }
+
+    private long floorTick(long epochMs) {
+        return epochMs - Math.floorMod(epochMs, periodMs);
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.journal.JournalRecord;
+import com.example.priceingestor.journal.JournalReplayer;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.GapRepository;
+import com.example.priceingestor.repository.PriceWriter;
+import com.example.priceingestor.repository.ReactivePriceWriter;
+import com.example.priceingestor.source.SourceAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// A cycle runs as a staged pipeline: fetch (adapters, on the cycle thread) -> validate -> persist,
+// joined by bounded queues (see Stage). Each stage has its own workers and batch size, so the one
+// that limits throughput shows up in its queue depth and service time and can be scaled alone.
+// Cycles never overlap, so whatever is in the queues belongs to the cycle in progress.
+// With ingestor.persistence=r2dbc the cycle is one non-blocking flux instead (see runReactiveCycle).
+// With ingestor.write-behind.enabled, persist() hands changed ticks to a WriteBehindBuffer that
+// writes them across cycles and sources in few large transactions.
+@Service
+public class IngestionService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionService.class);
+    private static final Duration FAILED_FETCH_RETENTION = Duration.ofDays(1);
+
+    private final List<SourceAdapter> adapters;
+    private final MeterRegistry registry;
+    private final PriceWriter writer;
+    private final PriceSink sink;
+    private final ChangeFilter changeFilter;
+    private final Optional<JournalReplayer> journal;
+    private final ShardCoordinator shards;
+    private final GapRepository gaps;
+    private final Duration stealDelay;
+    private final int batchSize;
+    private final Timer fetchService;
+    private final Counter fetchItems;
+    private final Counter rejected;
+    private final Stage<PriceTick> validate;
+    private final Stage<PriceTick> persist;
+    private final ReactivePriceWriter reactiveWriter;
+    private final int persistWorkers;
+    private final Timer persistService;
+    private final WriteBehindBuffer writeBehind;
+    private volatile Cycle current = new Cycle();
+
+    public IngestionService(
+        ObjectProvider<SourceAdapter> adapters,
+        MeterRegistry registry,
+        PriceWriters writers,
+        PriceSink sink,
+        ChangeFilter changeFilter,
+        Optional<JournalReplayer> journal,
+        Optional<ReactivePriceWriter> reactiveWriter,
+        ShardCoordinator shards,
+        GapRepository gaps,
+        @Value("${ingestor.batch-size}") int batchSize,
+        @Value("${ingestor.writer}") String writerName,
+        @Value("${ingestor.sharding.steal-delay-ms}") long stealDelayMs,
+        @Value("${ingestor.pipeline.validate.workers}") int validateWorkers,
+        @Value("${ingestor.pipeline.validate.batch-size}") int validateBatchSize,
+        @Value("${ingestor.pipeline.validate.queue-capacity}") int validateCapacity,
+        @Value("${ingestor.pipeline.persist.workers}") int persistWorkers,
+        @Value("${ingestor.pipeline.persist.batch-size}") int persistBatchSize,
+        @Value("${ingestor.pipeline.persist.queue-capacity}") int persistCapacity,
+        @Value("${ingestor.persistence}") String persistence,
+        @Value("${ingestor.write-behind.enabled}") boolean writeBehindEnabled,
+        @Value("${ingestor.write-behind.capacity}") int writeBehindCapacity,
+        @Value("${ingestor.write-behind.flush-size}") int writeBehindFlushSize,
+        @Value("${ingestor.write-behind.max-delay-ms}") long writeBehindMaxDelayMs
+    ) {
+        this.adapters = adapters.orderedStream().toList();
+        if (this.adapters.isEmpty()) {
+            throw new IllegalStateException("no ingestor.sources.* adapter is enabled");
+        }
+        this.registry = registry;
+        this.writer = writers.get(writerName);
+        this.sink = sink;
+        this.changeFilter = changeFilter;
+        this.journal = journal;
+        this.shards = shards;
+        this.gaps = gaps;
+        this.stealDelay = Duration.ofMillis(stealDelayMs);
+        if (!"jdbc".equals(persistence) && !"r2dbc".equals(persistence)) {
+            throw new IllegalArgumentException("ingestor.persistence must be 'jdbc' or 'r2dbc': " + persistence);
+        }
+        if ("r2dbc".equals(persistence) && journal.isPresent()) {
+            throw new IllegalStateException("the journal writes through JDBC; turn it off with ingestor.persistence=r2dbc");
+        }
+        if (writeBehindEnabled && ("r2dbc".equals(persistence) || journal.isPresent())) {
+            throw new IllegalStateException("ingestor.write-behind needs ingestor.persistence=jdbc and the journal off");
+        }
+        // a heartbeat would claim "unchanged" for buffered rows that are not written yet, or never are
+        if (writeBehindEnabled && changeFilter.recordsHeartbeats()) {
+            throw new IllegalStateException("ingestor.write-behind needs ingestor.change-filter.mode off or skip");
+        }
+        // R2dbcPriceRepository exists exactly when ingestor.persistence=r2dbc
+        this.reactiveWriter = "r2dbc".equals(persistence) ? reactiveWriter.orElseThrow() : null;
+        this.persistWorkers = persistWorkers;
+        this.batchSize = batchSize;
+        this.persistService = Stage.serviceTimer(registry, "persist");
+        this.fetchService = Stage.serviceTimer(registry, "fetch");
+        this.fetchItems = Stage.itemCounter(registry, "fetch");
+        this.rejected = Counter.builder("ingestor.stage.rejected").tag("stage", "validate").register(registry);
+        // the reactive cycle needs no stage threads, which keeps thread counts comparable
+        boolean staged = this.reactiveWriter == null;
+        this.persist = staged ? new Stage<>("persist", registry, persistCapacity, persistWorkers, persistBatchSize, this::persistStage) : null;
+        this.validate = staged ? new Stage<>("validate", registry, validateCapacity, validateWorkers, validateBatchSize, this::validateStage) : null;
+        this.writeBehind = writeBehindEnabled
+            ? new WriteBehindBuffer(registry, writeBehindCapacity, writeBehindFlushSize, Duration.ofMillis(writeBehindMaxDelayMs),
+                this::flushWriteBehind)
+            : null;
+    }
+
+    // Stream shutdown (a SmartLifecycle) has already flushed into persist() by the time this runs,
+    // so the write-behind buffer closes last and takes everything with it
+    @Override
+    public void destroy() {
+        if (validate != null) {
+            validate.close();
+            persist.close();
+        }
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    // Runs one cycle; every row is stamped with the given minute bucket. The fetch stage cuts the
+    // merged market flux into batch-size chunks (pulling at most two ahead of the validate queue)
+    // and returns once every tick it handed on has been written or rejected, so heap use depends
+    // on the stage buffers, not on how many coins we track.
+    public CycleReport runCycle(Instant bucket) {
+        if (reactiveWriter != null) {
+            return runReactiveCycle(bucket);
+        }
+        long start = System.nanoTime();
+        Cycle cycle = new Cycle();
+        current = cycle;
+
+        // Bucket to the minute to match unique index (source, symbol, ts_bucket)
+        Instant tsBucket = bucket.truncatedTo(ChronoUnit.MINUTES);
+        try {
+            Iterator<List<PriceTick>> fetched = ticks(bucket, tsBucket).buffer(batchSize).toIterable(2).iterator();
+            while (true) {
+                long t0 = System.nanoTime();
+                if (!fetched.hasNext()) {
+                    break;
+                }
+                List<PriceTick> batch = fetched.next();
+                fetchService.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+                fetchItems.increment(batch.size());
+                cycle.enter(batch.size());
+                for (PriceTick tick : batch) {
+                    validate.put(tick);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("cycle " + bucket + " interrupted", e);
+        } finally {
+            // even a failed fetch waits, so no tick of this cycle is left to count against the next
+            cycle.awaitDrained();
+        }
+        cycle.throwIfFailed();
+
+        return new CycleReport(
+            bucket,
+            cycle.fetched.get(),
+            cycle.inserted.get(),
+            cycle.rejected.get(),
+            cycle.batches.get(),
+            cycle.writeNanos.get() / 1_000_000,
+            (System.nanoTime() - start) / 1_000_000
+        );
+    }
+
+    // Fetch, validate and persist as one flux: up to persist.workers batches are in flight on the
+    // R2DBC pool at once, and no thread waits on the database or upstream along the way. Only the
+    // cycle thread blocks, for the cycle as a whole. Heartbeat rows (change filter) still go
+    // through JDBC, off the event loop.
+    private CycleReport runReactiveCycle(Instant bucket) {
+        long start = System.nanoTime();
+        Cycle cycle = new Cycle();
+        Instant tsBucket = bucket.truncatedTo(ChronoUnit.MINUTES);
+
+        ticks(bucket, tsBucket)
+            .doOnNext(t -> {
+                cycle.fetched.incrementAndGet();
+                fetchItems.increment();
+            })
+            .filter(t -> {
+                if (isValid(t)) {
+                    return true;
+                }
+                rejected.increment();
+                cycle.rejected.incrementAndGet();
+                return false;
+            })
+            .buffer(batchSize)
+            .flatMap(batch -> persistReactive(batch, cycle), persistWorkers)
+            .then()
+            .block();
+
+        return new CycleReport(
+            bucket,
+            cycle.fetched.get(),
+            cycle.inserted.get(),
+            cycle.rejected.get(),
+            cycle.batches.get(),
+            cycle.writeNanos.get() / 1_000_000,
+            (System.nanoTime() - start) / 1_000_000
+        );
+    }
+
+    private Mono<Integer> persistReactive(List<PriceTick> batch, Cycle cycle) {
+        List<PriceTick> changed = changeFilter.filter(batch);
+        long t0 = System.nanoTime();
+        Mono<Integer> written = changed.isEmpty() ? Mono.just(0) : reactiveWriter.write(changed);
+        return written
+            .doOnNext(n -> {
+                long nanos = System.nanoTime() - t0;
+                persistService.record(nanos, TimeUnit.NANOSECONDS);
+                cycle.writeNanos.addAndGet(nanos);
+                cycle.batches.incrementAndGet();
+                cycle.inserted.addAndGet(n);
+            })
+            .flatMap(n -> {
+                if (!changeFilter.recordsHeartbeats()) {
+                    changeFilter.commit(batch, changed);
+                    return Mono.just(n);
+                }
+                return Mono.fromRunnable(() -> changeFilter.commit(batch, changed))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .thenReturn(n);
+            });
+    }
+
+    // Ticks that cannot be stored (no price, non-finite numbers, missing identity) stop here instead
+    // of failing the whole DB batch they would land in
+    static boolean isValid(PriceTick t) {
+        return t.symbol() != null && t.coinId() != null && t.vsCurrency() != null && t.tsBucket() != null
+            && t.hasPrice() && t.priceFp() >= 0
+            && (t.marketCap() == null || Double.isFinite(t.marketCap()))
+            && (t.pctChange24h() == null || Double.isFinite(t.pctChange24h()));
+    }
+
+    private void validateStage(List<PriceTick> batch) throws InterruptedException {
+        Cycle cycle = current;
+        int dropped = 0;
+        for (PriceTick tick : batch) {
+            if (isValid(tick)) {
+                persist.put(tick);
+            } else {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            rejected.increment(dropped);
+            cycle.rejected.addAndGet(dropped);
+            cycle.exit(dropped);
+        }
+    }
+
+    private void persistStage(List<PriceTick> batch) {
+        Cycle cycle = current;
+        long t0 = System.nanoTime();
+        try {
+            cycle.inserted.addAndGet(persist(List.copyOf(batch)));
+        } catch (RuntimeException e) {
+            cycle.fail(e);
+        } finally {
+            cycle.writeNanos.addAndGet(System.nanoTime() - t0);
+            cycle.batches.incrementAndGet();
+            cycle.exit(batch.size());
+        }
+    }
+
+    // With the journal on, a batch is durable once appended; the DB write is then a journal drain,
+    // which also replays anything left over from earlier failed cycles first.
+    // Polled cycles and the push stream (StreamIngestor) both write through here.
+    // With write-behind on, the changed ticks are only buffered (blocking while the buffer is full)
+    // and this returns 0; ingestor.write_behind.rows counts what the flushes insert. They become the
+    // change filter's baseline when their flush commits, so a tick that is never written does not
+    // suppress the identical ones after it.
+    public int persist(List<PriceTick> batch) {
+        List<PriceTick> changed = changeFilter.filter(batch);
+        if (writeBehind != null) {
+            offer(changed);
+            return 0;
+        }
+        if (journal.isPresent()) {
+            if (!changed.isEmpty()) {
+                journal.get().append(new JournalRecord(changed));
+            }
+            changeFilter.commit(batch, changed);
+            return journal.get().drainIfHealthy();
+        }
+        int n = changed.isEmpty() ? 0 : sink.persist(writer, changed);
+        changeFilter.commit(batch, changed);
+        return n;
+    }
+
+    private int flushWriteBehind(List<PriceTick> ticks) {
+        int n = sink.persist(writer, ticks);
+        changeFilter.baseline(ticks);
+        return n;
+    }
+
+    private void offer(List<PriceTick> changed) {
+        try {
+            writeBehind.offer(changed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for write-behind space", e);
+        }
+    }
+
+    // Every adapter is subscribed at once, so a cycle takes as long as the slowest source rather
+    // than the sum of them. A failing unit list is logged and skipped; the other lists and sources
+    // still land. Units whose fetch failed are recorded in failed_fetches, so the gap scanner knows
+    // those holes are losses rather than coins that left the universe.
+    private Flux<PriceTick> ticks(Instant bucket, Instant tsBucket) {
+        if (shards.enabled()) {
+            return shardedTicks(bucket, tsBucket);
+        }
+        List<Flux<PriceTick>> fetches = new ArrayList<>(adapters.size());
+        for (SourceAdapter adapter : adapters) {
+            fetches.add(fetch(adapter, adapter.workUnits(bucket), bucket, tsBucket, false));
+        }
+        return Flux.merge(fetches);
+    }
+
+    // Errors are isolated per unit list, so one failing list does not drop the ones after it.
+    // With `claimed`, the units' claims are completed after a successful fetch and released after
+    // a failed one, so another replica's leftover pass can take them in the same bucket.
+    private Flux<PriceTick> fetch(SourceAdapter adapter, List<String> units, Instant bucket, Instant tsBucket, boolean claimed) {
+        if (units.isEmpty()) {
+            return Flux.empty();
+        }
+        List<String> claims = units.stream().map(u -> adapter.source() + "/" + u).toList();
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return adapter.fetch(tsBucket, units)
+                .concatWith(Mono.defer(() -> {
+                    sample.stop(fetchTimer(adapter, "success"));
+                    return claimed ? coordinate(() -> shards.complete(bucket, claims)) : Mono.empty();
+                }).then(Mono.empty()))
+                .onErrorResume(e -> {
+                    sample.stop(fetchTimer(adapter, "failure"));
+                    log.warn("fetch from {} failed: {}", adapter.source(), e.toString());
+                    Mono<Void> release = claimed ? coordinate(() -> shards.release(bucket, claims)) : Mono.empty();
+                    return recordFailure(adapter, tsBucket, units, e).then(release).then(Mono.empty());
+                });
+        });
+    }
+
+    // Which unit of a list failed is not known, so all of them are recorded. Off the event loop,
+    // and never failing the cycle itself.
+    private Mono<Void> recordFailure(SourceAdapter adapter, Instant tsBucket, List<String> units, Throwable error) {
+        return Mono.<Void>fromRunnable(() -> {
+                gaps.pruneFailedFetches(tsBucket.minus(FAILED_FETCH_RETENTION));
+                gaps.recordFailedFetch(adapter.source(), tsBucket, units, error.toString());
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                log.warn("could not record failed fetch from {}: {}", adapter.source(), e.toString());
+                return Mono.empty();
+            });
+    }
+
+    private Timer fetchTimer(SourceAdapter adapter, String outcome) {
+        return Timer.builder("ingestor.source.fetch")
+            .tag("source", adapter.source())
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+    // Work units of all sources are claimed together as "<source>/<unit>". This replica fetches
+    // its own share first, then, stealDelay after that, any unit that is still unclaimed or whose
+    // claim was left uncompleted by a replica that died, stalled, or has held it for stealDelay.
+    private Flux<PriceTick> shardedTicks(Instant bucket, Instant tsBucket) {
+        List<String> units = new ArrayList<>();
+        for (SourceAdapter adapter : adapters) {
+            adapter.workUnits(bucket).forEach(u -> units.add(adapter.source() + "/" + u));
+        }
+        Flux<PriceTick> own = claim(() -> shards.claimShare(bucket, units))
+            .flatMapMany(won -> fetchClaimed(won, bucket, tsBucket));
+        Flux<PriceTick> leftovers = Mono.delay(stealDelay)
+            .then(claim(() -> shards.claimLeftovers(bucket, units, stealDelay)))
+            .flatMapMany(won -> fetchClaimed(won, bucket, tsBucket));
+        return Flux.concat(own, leftovers);
+    }
+
+    private Flux<PriceTick> fetchClaimed(List<String> won, Instant bucket, Instant tsBucket) {
+        List<Flux<PriceTick>> fetches = new ArrayList<>(adapters.size());
+        for (SourceAdapter adapter : adapters) {
+            String prefix = adapter.source() + "/";
+            List<String> mine = won.stream()
+                .filter(u -> u.startsWith(prefix))
+                .map(u -> u.substring(prefix.length()))
+                .toList();
+            fetches.add(fetch(adapter, mine, bucket, tsBucket, true));
+        }
+        return Flux.merge(fetches);
+    }
+
+    // A failed claim round only costs this replica its units; other replicas' leftover passes take them
+    private Mono<List<String>> claim(Callable<List<String>> claim) {
+        return Mono.fromCallable(claim)
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                log.warn("claiming work units failed: {}", e.toString());
+                return Mono.just(List.of());
+            });
+    }
+
+    private Mono<Void> coordinate(Runnable update) {
+        return Mono.fromRunnable(update)
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(e -> {
+                log.warn("updating work unit claims failed: {}", e.toString());
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    // Per-cycle tallies; `pending` counts ticks handed to validate that are not yet written or rejected
+    private static final class Cycle {
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger inserted = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicLong writeNanos = new AtomicLong();
+        private long pending;
+        private RuntimeException failure;
+
+        synchronized void enter(int n) {
+            fetched.addAndGet(n);
+            pending += n;
+        }
+
+        synchronized void exit(int n) {
+            pending -= n;
+            if (pending == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+
+        synchronized void awaitDrained() {
+            boolean interrupted = false;
+            while (pending > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // shutting down: the stage workers are being stopped too
+                    interrupted = true;
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void throwIfFailed() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.repository.PartitionRepository;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Keeps monthly prices and prices_v2 partitions ahead of ingestion and applies the retention policy.
+// Runs once before the scheduler starts (so the first cycle always has a partition to write to)
+// and then every ingestor.partitions.check-interval-ms. Writers of past months (backfills, gap
+// repairs) call ensureRange first, since nothing else creates partitions behind the current month.
+@Component
+public class PartitionManager implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionManager.class);
+
+    private final PartitionRepository partitions;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final String retentionAction;
+    private final Clock clock = Clock.systemUTC();
+
+    public PartitionManager(
+        PartitionRepository partitions,
+        @Value("${ingestor.partitions.premake-months}") int premakeMonths,
+        @Value("${ingestor.partitions.retention-months}") int retentionMonths,
+        @Value("${ingestor.partitions.retention-action}") String retentionAction
+    ) {
+        if (!"detach".equals(retentionAction) && !"drop".equals(retentionAction)) {
+            throw new IllegalArgumentException("ingestor.partitions.retention-action must be 'detach' or 'drop': " + retentionAction);
+        }
+        this.partitions = partitions;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.retentionAction = retentionAction;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        maintain();
+    }
+
+    @Scheduled(
+        fixedDelayString = "${ingestor.partitions.check-interval-ms}",
+        initialDelayString = "${ingestor.partitions.check-interval-ms}")
+    public synchronized void maintain() {
+        for (String table : PartitionRepository.TABLES) {
+            maintain(table);
+        }
+    }
+
+    // Creates whatever partitions of prices and prices_v2 the months of [from, to) still lack
+    public synchronized void ensureRange(Instant from, Instant to) {
+        YearMonth first = YearMonth.from(from.atZone(ZoneOffset.UTC));
+        YearMonth last = YearMonth.from(to.minusNanos(1).atZone(ZoneOffset.UTC));
+        for (String table : PartitionRepository.TABLES) {
+            List<YearMonth> attached = partitions.attachedMonths(table);
+            for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                if (!attached.contains(month)) {
+                    boolean reattached = partitions.create(table, month);
+                    log.info("{} partition {} for historical writes", reattached ? "re-attached detached" : "created",
+                        PartitionRepository.partitionName(table, month));
+                }
+            }
+        }
+    }
+
+    private void maintain(String table) {
+        YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+        List<YearMonth> attached = partitions.attachedMonths(table);
+
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!attached.contains(month)) {
+                boolean reattached = partitions.create(table, month);
+                log.info("{} partition {}", reattached ? "re-attached detached" : "created",
+                    PartitionRepository.partitionName(table, month));
+            }
+        }
+
+        // 0 keeps everything
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (YearMonth month : attached) {
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            partitions.detach(table, month);
+            if ("drop".equals(retentionAction)) {
+                partitions.drop(table, month);
+            }
+            log.info("{} expired partition {}", retentionAction, PartitionRepository.partitionName(table, month));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.CandleResolution;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.CandleRepository;
+import com.example.priceingestor.repository.PriceRepository;
+import com.example.priceingestor.repository.PriceWriter;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Persists one batch and everything derived from it in a single transaction,
+// so candles and latest_prices never disagree with the prices rows they were built from.
+@Service
+public class PriceSink {
+
+    private final CandleRepository candles;
+    private final PriceRepository prices;
+    private final TransactionTemplate tx;
+    private final boolean candlesEnabled;
+
+    public PriceSink(
+        CandleRepository candles,
+        PriceRepository prices,
+        TransactionTemplate tx,
+        @Value("${ingestor.candles.enabled}") boolean candlesEnabled
+    ) {
+        this.candles = candles;
+        this.prices = prices;
+        this.tx = tx;
+        this.candlesEnabled = candlesEnabled;
+    }
+
+    public int persist(PriceWriter writer, List<PriceTick> ticks) {
+        Integer inserted = tx.execute(status -> {
+            int n = writer.write(ticks);
+            // Nothing new means no candle and no latest price can have changed
+            if (n > 0) {
+                prices.upsertLatest(ticks);
+                if (candlesEnabled) {
+                    refreshCandles(ticks);
+                }
+            }
+            return n;
+        });
+        return inserted == null ? 0 : inserted;
+    }
+
+    private void refreshCandles(List<PriceTick> ticks) {
+        Map<Series, List<PriceTick>> bySeries = ticks.stream()
+            .collect(Collectors.groupingBy(t -> new Series(t.source(), t.vsCurrency())));
+        bySeries.forEach((series, seriesTicks) -> {
+            Set<String> symbols = seriesTicks.stream().map(PriceTick::symbol).collect(Collectors.toSet());
+            Instant from = seriesTicks.stream().map(PriceTick::tsBucket).min(Instant::compareTo).orElseThrow();
+            Instant to = seriesTicks.stream().map(PriceTick::tsBucket).max(Instant::compareTo).orElseThrow();
+            for (CandleResolution resolution : CandleResolution.values()) {
+                candles.refresh(resolution, series.source(), series.vsCurrency(), symbols, from, to);
+            }
+        });
+    }
+
+    private record Series(String source, String vsCurrency) {}
+}
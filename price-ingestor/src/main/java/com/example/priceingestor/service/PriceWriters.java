@@ -0,0 +1,53 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.PriceWriter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Component;
+
+// Looks up PriceWriter implementations by name so each workload can pick its own
+// (ingestor.writer for live cycles, ingestor.backfill.writer for backfills). Writers handed out here report rows/sec per batch.
+@Component
+public class PriceWriters {
+
+    private final Map<String, PriceWriter> byName;
+    private final MeterRegistry registry;
+
+    public PriceWriters(List<PriceWriter> writers, MeterRegistry registry) {
+        this.byName = writers.stream().collect(Collectors.toMap(PriceWriter::name, Function.identity()));
+        this.registry = registry;
+    }
+
+    public PriceWriter get(String name) {
+        PriceWriter writer = byName.get(name);
+        if (writer == null) {
+            throw new IllegalArgumentException("Unknown price writer '" + name + "', expected one of " + byName.keySet());
+        }
+        return new Metered(writer, DistributionSummary.builder("ingestor.writer.rows_per_sec")
+            .description("Rows handed to the writer per second of write time")
+            .tag("writer", name)
+            .register(registry));
+    }
+
+    private record Metered(PriceWriter delegate, DistributionSummary rowsPerSec) implements PriceWriter {
+
+        @Override
+        public String name() {
+            return delegate.name();
+        }
+
+        @Override
+        public int write(List<PriceTick> ticks) {
+            long t0 = System.nanoTime();
+            int inserted = delegate.write(ticks);
+            long nanos = Math.max(1, System.nanoTime() - t0);
+            rowsPerSec.record(ticks.size() * 1_000_000_000.0 / nanos);
+            return inserted;
+        }
+    }
+}
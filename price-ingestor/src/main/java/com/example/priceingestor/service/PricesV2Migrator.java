@@ -0,0 +1,147 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.repository.PartitionRepository;
+import com.example.priceingestor.repository.PricesV2MigrationRepository;
+import com.example.priceingestor.repository.PricesV2MigrationRepository.State;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Moves the price history into prices_v2 while ingestion keeps running.
+//
+// The first run attaches the dual-write trigger to prices, so every row from then on is written to
+// both tables. Each run after that copies the next batch-pages heap pages of the oldest prices
+// partition not yet walked, in its own short transaction, and records the position in
+// prices_v2_migration; a restart (or another instance, which skips the locked progress row) picks
+// up from there. When the newest partition has been walked, the same batched walk goes over prices_v2
+// to give rows copied before V13 their symbol_key, after which V13's NOT NULL check is validated.
+// The migration is marked complete at that point and the old and new sizes are logged; switching
+// readers and writers over is then ingestor.prices-schema=v2.
+@Component
+@ConditionalOnProperty(name = "ingestor.prices-v2.migration.enabled", havingValue = "true")
+public class PricesV2Migrator {
+
+    private static final Logger log = LoggerFactory.getLogger(PricesV2Migrator.class);
+
+    private final PricesV2MigrationRepository migration;
+    private final PartitionRepository partitions;
+    private final TransactionTemplate tx;
+    private final int batchPages;
+    private volatile boolean triggerInstalled;
+    private volatile boolean done;
+
+    public PricesV2Migrator(
+        PricesV2MigrationRepository migration,
+        PartitionRepository partitions,
+        TransactionTemplate tx,
+        @Value("${ingestor.prices-v2.migration.batch-pages}") int batchPages
+    ) {
+        if (batchPages <= 0) {
+            throw new IllegalArgumentException("ingestor.prices-v2.migration.batch-pages must be positive: " + batchPages);
+        }
+        this.migration = migration;
+        this.partitions = partitions;
+        this.tx = tx;
+        this.batchPages = batchPages;
+    }
+
+    @Scheduled(fixedDelayString = "${ingestor.prices-v2.migration.interval-ms}")
+    public void step() {
+        if (done) {
+            return;
+        }
+        try {
+            if (!triggerInstalled) {
+                tx.executeWithoutResult(status -> migration.installTrigger());
+                triggerInstalled = true;
+            }
+            Boolean finished = tx.execute(status -> nextBatch());
+            if (Boolean.TRUE.equals(finished)) {
+                done = true;
+                log.info("prices_v2 migration complete: prices {} bytes, prices_v2 {} bytes",
+                    migration.totalBytes("prices"), migration.totalBytes("prices_v2"));
+            }
+        } catch (Exception e) {
+            // The batch rolled back as a whole; the next run retries it
+            log.warn("prices_v2 migration batch failed: {}", e.toString());
+        }
+    }
+
+    // True once there is nothing left to copy or key
+    private boolean nextBatch() {
+        Optional<State> locked = migration.lock();
+        if (locked.isEmpty()) {
+            return false;
+        }
+        State state = locked.get();
+        if (state.completed()) {
+            return true;
+        }
+
+        if (!state.copied()) {
+            if (walk("prices", state.partition(), state.nextPage(), migration::copyPages, migration::advance)) {
+                migration.markCopied();
+            }
+            return false;
+        }
+        if (walk("prices_v2", state.symbolPartition(), state.symbolNextPage(), migration::keySymbols,
+            (month, nextPage, rows) -> migration.advanceSymbols(month, nextPage))) {
+            migration.validateSymbolKeys();
+            migration.complete();
+            return true;
+        }
+        return false;
+    }
+
+    // Handles the next batch-pages heap pages of `table`'s partitions from (month, page) on, oldest
+    // partition first; true once the newest one has been walked
+    private boolean walk(String table, YearMonth month, long page, PageBatch batch, Progress progress) {
+        List<YearMonth> months = partitions.attachedMonths(table);
+        if (month == null || !months.contains(month)) {
+            // Not started, or the partition was detached by retention meanwhile: take the next one
+            Optional<YearMonth> next = nextAfter(months, month);
+            if (next.isEmpty()) {
+                return true;
+            }
+            month = next.get();
+            page = 0;
+        }
+
+        long pages = migration.pages(table, month);
+        if (page >= pages) {
+            Optional<YearMonth> next = nextAfter(months, month);
+            if (next.isEmpty()) {
+                return true;
+            }
+            progress.advance(next.get(), 0, 0);
+            return false;
+        }
+
+        long to = Math.min(page + batchPages, pages);
+        int rows = batch.run(month, page, to);
+        progress.advance(month, to, rows);
+        log.debug("prices_v2 migration: {} {} pages {}-{} of {}, {} rows", table, month, page, to, pages, rows);
+        return false;
+    }
+
+    private static Optional<YearMonth> nextAfter(List<YearMonth> months, YearMonth month) {
+        return months.stream().filter(m -> month == null || m.isAfter(month)).findFirst();
+    }
+
+    @FunctionalInterface
+    private interface PageBatch {
+        int run(YearMonth month, long fromPage, long toPage);
+    }
+
+    @FunctionalInterface
+    private interface Progress {
+        void advance(YearMonth month, long nextPage, int rows);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.repository.CoordinationRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Splits each cycle's work units (e.g. /coins/markets pages) across price-ingestor replicas.
+//
+// Every cycle a replica heartbeats into ingestor_members, derives the live member list, and
+// claims the units that the list assigns to it (unit index modulo member count). Claims go
+// through ingestor_claims' (ts_bucket, work_unit) primary key, so a unit is fetched at most once
+// per bucket even while replicas briefly disagree on membership. A claim is completed once its unit
+// has been fetched, and released if the fetch failed. After its own share, a replica claims whatever
+// is still unclaimed, plus claims left uncompleted by a replica that stopped heartbeating or has sat
+// on them longer than the steal delay (a dead or stuck replica's share), so coverage recovers within
+// the same cycle; from the next cycle the dead replica drops out of the member list entirely.
+@Component
+public class ShardCoordinator implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+    private static final Duration CLAIM_RETENTION = Duration.ofHours(1);
+
+    private final CoordinationRepository coordination;
+    private final boolean enabled;
+    private final String memberId;
+    private final Duration liveness;
+
+    public ShardCoordinator(
+        CoordinationRepository coordination,
+        @Value("${ingestor.sharding.enabled}") boolean enabled,
+        @Value("${ingestor.sharding.instance-id}") String instanceId,
+        @Value("${ingestor.period-ms}") long periodMs
+    ) {
+        this.coordination = coordination;
+        this.enabled = enabled;
+        this.memberId = instanceId == null || instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+        this.liveness = Duration.ofMillis(periodMs * 2);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    // Claims this replica's share of `units` for the bucket
+    public List<String> claimShare(Instant bucket, List<String> units) {
+        Instant now = Instant.now();
+        coordination.heartbeat(memberId, now);
+        coordination.pruneClaims(bucket.minus(CLAIM_RETENTION));
+
+        List<String> members = coordination.liveMembers(now.minus(liveness));
+        int index = members.indexOf(memberId);
+        int size = Math.max(members.size(), 1);
+
+        List<String> mine = new ArrayList<>();
+        for (int i = 0; i < units.size(); i++) {
+            if (i % size == Math.max(index, 0)) {
+                mine.add(units.get(i));
+            }
+        }
+        List<String> won = coordination.claim(bucket, memberId, mine);
+        log.debug("member {} ({} of {}) claimed {}/{} units for {}", memberId, index + 1, size, won.size(), units.size(), bucket);
+        return won;
+    }
+
+    // Claims any unit nobody has claimed or completed, i.e. the share of replicas that died or stalled
+    public List<String> claimLeftovers(Instant bucket, List<String> units, Duration staleAfter) {
+        Instant now = Instant.now();
+        List<String> won = coordination.claimLeftovers(bucket, memberId, units, now.minus(liveness), now.minus(staleAfter));
+        if (!won.isEmpty()) {
+            log.info("member {} took over {} unclaimed units for {}", memberId, won.size(), bucket);
+        }
+        return won;
+    }
+
+    public void complete(Instant bucket, List<String> units) {
+        coordination.complete(bucket, memberId, units);
+    }
+
+    public void release(Instant bucket, List<String> units) {
+        coordination.release(bucket, memberId, units);
+    }
+
+    @Override
+    public void destroy() {
+        if (enabled) {
+            // lets the others rebalance on their next cycle instead of waiting for the heartbeat to expire
+            coordination.leave(memberId);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.priceingestor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// One pipeline stage: a bounded ring buffer (ArrayBlockingQueue) drained by `workers` threads of
+// its own, each handing up to batchSize queued items at a time to the stage's work. A full buffer
+// blocks put(), so a slow stage pushes back on the one feeding it instead of growing the heap.
+// A worker takes whatever is queued when it wakes, so batches run short while the stage keeps up.
+//
+// Meters, tagged stage=<name>: ingestor.stage.queue.depth (items waiting), ingestor.stage.service
+// (time per batch) and ingestor.stage.items (items processed; its rate is the stage's throughput).
+final class Stage<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(Stage.class);
+
+    @FunctionalInterface
+    interface Work<T> {
+        // `batch` is reused by the worker once this returns
+        void accept(List<T> batch) throws InterruptedException;
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int batchSize;
+    private final Work<T> work;
+    private final Timer service;
+    private final Counter items;
+    private final ExecutorService workers;
+
+    Stage(String name, MeterRegistry registry, int capacity, int workerCount, int batchSize, Work<T> work) {
+        if (capacity < 1 || workerCount < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("stage " + name + ": queue-capacity, workers and batch-size must be >= 1");
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.work = work;
+        this.service = serviceTimer(registry, name);
+        this.items = itemCounter(registry, name);
+        Gauge.builder("ingestor.stage.queue.depth", queue, BlockingQueue::size).tag("stage", name).register(registry);
+
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "stage-" + name + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::drain);
+        }
+    }
+
+    static Timer serviceTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("ingestor.stage.service").tag("stage", stage).register(registry);
+    }
+
+    static Counter itemCounter(MeterRegistry registry, String stage) {
+        return Counter.builder("ingestor.stage.items").tag("stage", stage).register(registry);
+    }
+
+    String name() {
+        return name;
+    }
+
+    // Blocks while the buffer is full
+    void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    void close() {
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("stage {} did not stop within 5s", name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>(batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                long t0 = System.nanoTime();
+                try {
+                    work.accept(batch);
+                } catch (RuntimeException e) {
+                    // the work is expected to account for its own failures; this only keeps the worker alive
+                    log.error("stage {} dropped a batch of {}", name, batch.size(), e);
+                } finally {
+                    service.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+                    items.increment(batch.size());
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.PriceTick;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps only the last price per asset and bucket. Memory is bounded by the subscribed asset list:
+// each asset holds its open bucket plus at most one closed bucket awaiting drain (a later closed
+// bucket replaces an undrained one, i.e. if flushing stalls we keep the newest value, not a backlog).
+class StreamConflator {
+
+    private final String source;
+    private final String vsCurrency;
+    private final Map<String, Asset> assets;
+    private final Map<String, Slot> open = new HashMap<>();
+    private final Map<String, Slot> closed = new HashMap<>();
+
+    StreamConflator(String source, String vsCurrency, Map<String, Asset> assets) {
+        this.source = source;
+        this.vsCurrency = vsCurrency;
+        this.assets = assets;
+    }
+
+    // Returns false for assets we did not subscribe to; the price is fixed-point (see FixedPoint)
+    synchronized boolean offer(String asset, long priceFp, int priceScale, Instant at) {
+        Asset a = assets.get(asset);
+        if (a == null) {
+            return false;
+        }
+        Instant start = floor(at, a.bucket());
+        Slot slot = open.get(asset);
+        if (slot != null && slot.bucket().isBefore(start)) {
+            closed.put(asset, slot);
+        }
+        if (slot == null || !slot.bucket().isAfter(start)) {
+            open.put(asset, new Slot(start, priceFp, priceScale));
+        }
+        return true;
+    }
+
+    // Ticks for every bucket that has ended by `now`
+    synchronized List<PriceTick> drain(Instant now) {
+        List<PriceTick> ticks = new ArrayList<>(closed.size() + open.size());
+        closed.forEach((asset, slot) -> ticks.add(tick(asset, slot)));
+        closed.clear();
+        open.entrySet().removeIf(e -> {
+            Instant end = e.getValue().bucket().plus(assets.get(e.getKey()).bucket());
+            if (end.isAfter(now)) {
+                return false;
+            }
+            ticks.add(tick(e.getKey(), e.getValue()));
+            return true;
+        });
+        return ticks;
+    }
+
+    synchronized int pending() {
+        return open.size() + closed.size();
+    }
+
+    private PriceTick tick(String asset, Slot slot) {
+        Asset a = assets.get(asset);
+        return new PriceTick(source, a.symbol(), asset, a.name(), vsCurrency, slot.priceFp(), slot.priceScale(), null, null,
+            slot.bucket());
+    }
+
+    static Instant floor(Instant at, Duration bucket) {
+        long millis = bucket.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(at.toEpochMilli(), millis) * millis);
+    }
+
+    // One subscribed asset: what we store it as, and how wide its buckets are
+    record Asset(String symbol, String name, Duration bucket) {}
+
+    private record Slot(Instant bucket, long priceFp, int priceScale) {}
+}
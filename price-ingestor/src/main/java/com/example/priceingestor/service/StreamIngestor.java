@@ -0,0 +1,233 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+// Push-based ingestion from a CoinCap-style ticker WebSocket, where every message is a JSON object
+// of asset id -> latest price ({"bitcoin":"65000.12","ethereum":"3000.5"}).
+//
+// Updates are conflated per asset and bucket (last value wins) and flushed once the bucket has
+// ended, through the same IngestionService.persist path as polled cycles (change filter, journal,
+// writer). Assets listed in fast-assets use fast-bucket-ms buckets instead of bucket-ms, so they
+// get sub-minute rows. Messages are applied inline as they arrive, so memory is bounded by the
+// asset list rather than by the message rate or by how far behind the DB is.
+//
+// A dropped or silent connection (nothing for idle-timeout) is reopened with the same asset list,
+// backing off exponentially; the backoff resets once messages flow again. Conflation state lives
+// outside the connection, so whatever the current bucket already received survives a reconnect.
+@Component
+@ConditionalOnProperty(name = "ingestor.stream.enabled", havingValue = "true")
+public class StreamIngestor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamIngestor.class);
+    private static final JsonFactory JSON = new JsonFactory();
+    // CoinCap's price feed is quoted in US dollars
+    private static final String VS_CURRENCY = "usd";
+
+    private final IngestionService ingestion;
+    private final WebSocketClient client;
+    private final URI uri;
+    private final String source;
+    private final StreamConflator conflator;
+    private final Duration idleTimeout;
+    private final long flushMs;
+    private final Counter messages;
+    private final Counter ignored;
+    private final Counter reconnects;
+
+    private ScheduledThreadPoolExecutor flusher;
+    private Disposable connection;
+    private volatile boolean running;
+
+    public StreamIngestor(
+        IngestionService ingestion,
+        MeterRegistry registry,
+        @Value("${ingestor.stream.url}") String url,
+        @Value("${ingestor.stream.source}") String source,
+        @Value("${ingestor.stream.assets}") String assets,
+        @Value("${ingestor.stream.fast-assets}") String fastAssets,
+        @Value("${ingestor.stream.bucket-ms}") long bucketMs,
+        @Value("${ingestor.stream.fast-bucket-ms}") long fastBucketMs,
+        @Value("${ingestor.stream.idle-timeout-ms}") long idleTimeoutMs
+    ) {
+        if (bucketMs <= 0 || fastBucketMs <= 0 || 60_000 % fastBucketMs != 0 || bucketMs % fastBucketMs != 0) {
+            throw new IllegalArgumentException(
+                "ingestor.stream.fast-bucket-ms must be positive and divide both a minute and bucket-ms");
+        }
+        Set<String> fast = split(fastAssets).collect(Collectors.toSet());
+        Map<String, StreamConflator.Asset> byId = new LinkedHashMap<>();
+        // id[:symbol[:name]]
+        split(assets).forEach(spec -> {
+            String[] parts = spec.split(":", 3);
+            String id = parts[0];
+            byId.put(id, new StreamConflator.Asset(
+                parts.length > 1 ? parts[1] : id,
+                parts.length > 2 ? parts[2] : id,
+                Duration.ofMillis(fast.contains(id) ? fastBucketMs : bucketMs)));
+        });
+        if (byId.isEmpty()) {
+            throw new IllegalArgumentException("ingestor.stream.assets is empty");
+        }
+        this.ingestion = ingestion;
+        this.client = new ReactorNettyWebSocketClient();
+        this.uri = URI.create(url + (url.contains("?") ? "&" : "?") + "assets=" + String.join(",", byId.keySet()));
+        this.source = source;
+        this.conflator = new StreamConflator(source, VS_CURRENCY, byId);
+        this.idleTimeout = Duration.ofMillis(idleTimeoutMs);
+        this.flushMs = fast.isEmpty() ? bucketMs : fastBucketMs;
+        this.messages = Counter.builder("ingestor.stream.messages").tag("source", source).register(registry);
+        this.ignored = Counter.builder("ingestor.stream.ignored")
+            .description("Updates for assets we did not subscribe to, or unparsable values")
+            .tag("source", source)
+            .register(registry);
+        this.reconnects = Counter.builder("ingestor.stream.reconnects").tag("source", source).register(registry);
+        Gauge.builder("ingestor.stream.pending", conflator, StreamConflator::pending).tag("source", source).register(registry);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        flusher = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, "stream-flusher"));
+        flusher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // first flush just after the next bucket boundary, then once per (smallest) bucket
+        long now = System.currentTimeMillis();
+        long firstDelay = flushMs - Math.floorMod(now, flushMs) + 250;
+        flusher.scheduleAtFixedRate(() -> flush(Instant.now()), firstDelay, flushMs, TimeUnit.MILLISECONDS);
+        connection = messages()
+            .subscribe(this::apply, e -> log.error("stream {} stopped: {}", source, e.toString()));
+        log.info("streaming {} from {}", source, uri);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (connection != null) {
+            connection.dispose();
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // whatever the open buckets hold so far is the latest we know; write it rather than lose it
+        flush(Instant.MAX);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Text frames of one connection; completion and silence are both treated as a dropped
+    // connection so the retry below reopens it
+    private Flux<String> messages() {
+        Flux<String> session = Flux.create(sink -> {
+            Disposable d = client.execute(uri, ws -> ws.receive()
+                    .map(WebSocketMessage::getPayloadAsText)
+                    .doOnNext(sink::next)
+                    .then())
+                .subscribe(v -> { }, sink::error, () -> sink.error(new IOException("stream closed by server")));
+            sink.onDispose(d);
+        });
+        return session
+            .timeout(idleTimeout)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(30))
+                .transientErrors(true)
+                .filter(e -> running)
+                .doBeforeRetry(signal -> {
+                    reconnects.increment();
+                    log.warn("stream {} dropped ({}), reconnecting", source, signal.failure().toString());
+                }));
+    }
+
+    void apply(String message) {
+        messages.increment();
+        Instant at = Instant.now();
+        try (JsonParser p = JSON.createParser(message)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                ignored.increment();
+                return;
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String asset = p.currentName();
+                JsonToken value = p.nextToken();
+                if (value != JsonToken.VALUE_STRING && !value.isNumeric()) {
+                    p.skipChildren();
+                    ignored.increment();
+                    continue;
+                }
+                if (!offer(asset, p.getText(), at)) {
+                    ignored.increment();
+                }
+            }
+        } catch (IOException e) {
+            ignored.increment();
+        }
+    }
+
+    // Exact from the price's text, at the largest scale up to MAX_SCALE that fits (as CoinGeckoAdapter)
+    private boolean offer(String asset, String text, Instant at) {
+        for (int scale = FixedPoint.MAX_SCALE; scale >= 0; scale--) {
+            long v = FixedPoint.parse(text, scale);
+            if (v != FixedPoint.NULL) {
+                return conflator.offer(asset, v, scale, at);
+            }
+        }
+        return false;
+    }
+
+    private void flush(Instant now) {
+        List<PriceTick> ticks = conflator.drain(now);
+        if (ticks.isEmpty()) {
+            return;
+        }
+        try {
+            ingestion.persist(ticks);
+        } catch (RuntimeException e) {
+            // without the journal these values are lost; GapMonitor will see the hole
+            log.error("stream flush of {} ticks for {} failed: {}", ticks.size(), source, e.toString());
+        }
+    }
+
+    private static Stream<String> split(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).filter(s -> !s.isEmpty());
+    }
+}
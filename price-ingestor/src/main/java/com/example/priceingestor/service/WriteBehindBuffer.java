@@ -0,0 +1,247 @@
+package com.example.priceingestor.service;
+
+import com.example.priceingestor.model.PriceTick;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Coalesces ticks from every producer (cycles of all sources, the stream) and writes them in few,
+// large transactions. Ticks are keyed by (source, symbol, vs_currency, ts_bucket); a later tick for
+// a key still waiting replaces the earlier one. A background thread flushes once flush-size keys are
+// waiting or the oldest has waited max-delay, in chunks of flush-size. Producers block while
+// capacity keys are waiting (backpressure), but for at most max-delay: a buffer that stays full
+// means flushes are failing, and the producer gets an exception rather than stalling for good.
+// A failed chunk goes back into the buffer (newer ticks for the same key win) and is retried after
+// a backoff that doubles from one second up to max-delay. close() interrupts the flusher, waits for
+// it, and flushes whatever is left.
+final class WriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ToIntFunction<List<PriceTick>> writer;
+    private final int capacity;
+    private final int flushSize;
+    private final long maxDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition due = lock.newCondition();
+    private final Thread flusher;
+    private final Counter coalesced;
+    private final Counter written;
+    private final Timer flushTimer;
+    private final MeterRegistry registry;
+
+    private Map<Key, PriceTick> pending = new LinkedHashMap<>();
+    private long oldestNanos;
+    private boolean closed;
+
+    WriteBehindBuffer(MeterRegistry registry, int capacity, int flushSize, Duration maxDelay, ToIntFunction<List<PriceTick>> writer) {
+        if (flushSize < 1 || capacity < flushSize) {
+            throw new IllegalArgumentException("write-behind needs 1 <= flush-size <= capacity");
+        }
+        this.writer = writer;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.registry = registry;
+        this.coalesced = Counter.builder("ingestor.write_behind.coalesced")
+            .description("Ticks replaced by a later tick for the same key before being written")
+            .register(registry);
+        this.written = Counter.builder("ingestor.write_behind.rows")
+            .description("Rows the flushes reported as inserted")
+            .register(registry);
+        this.flushTimer = Timer.builder("ingestor.write_behind.flush").register(registry);
+        Gauge.builder("ingestor.write_behind.pending", this, WriteBehindBuffer::size).register(registry);
+        this.flusher = new Thread(this::run, "write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Blocks while the buffer is full, up to max-delay
+    void offer(List<PriceTick> ticks) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("write-behind buffer is closed");
+            }
+            for (PriceTick t : ticks) {
+                Key key = Key.of(t);
+                if (pending.containsKey(key)) {
+                    pending.put(key, t);
+                    coalesced.increment();
+                    continue;
+                }
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (pending.size() >= capacity) {
+                    if (closed) {
+                        throw new IllegalStateException("write-behind buffer is closed");
+                    }
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        throw new IllegalStateException("write-behind buffer stayed full for max-delay; flushes are failing");
+                    }
+                    due.signal();
+                    notFull.awaitNanos(left);
+                }
+                if (pending.isEmpty()) {
+                    oldestNanos = System.nanoTime();
+                }
+                pending.put(key, t);
+            }
+            if (pending.size() >= flushSize) {
+                due.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stops the flusher (it finishes at most the chunk it is writing and requeues the rest), then
+    // writes everything still waiting once; there is no later flush to retry a failed chunk, so
+    // those ticks are logged as lost
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            due.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int lost = write(take(), "shutdown", new ArrayList<>());
+        if (lost > 0) {
+            log.error("write-behind: {} ticks could not be written at shutdown", lost);
+        }
+    }
+
+    private void run() {
+        long backoff = 0;
+        long retryAt = 0;
+        while (true) {
+            String reason;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        return;
+                    }
+                    if (backoff > 0 && retryAt - System.nanoTime() > 0) {
+                        due.awaitNanos(retryAt - System.nanoTime());
+                        continue;
+                    }
+                    if (pending.size() >= flushSize) {
+                        reason = "size";
+                        break;
+                    }
+                    long waited = System.nanoTime() - oldestNanos;
+                    if (!pending.isEmpty() && waited >= maxDelayNanos) {
+                        reason = "time";
+                        break;
+                    }
+                    due.awaitNanos(pending.isEmpty() ? maxDelayNanos : maxDelayNanos - waited);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            List<PriceTick> batch = take();
+            List<PriceTick> failed = new ArrayList<>();
+            if (write(batch, reason, failed) > 0) {
+                requeue(failed);
+                backoff = backoff == 0 ? Math.min(MIN_BACKOFF_NANOS, maxDelayNanos) : Math.min(backoff * 2, maxDelayNanos);
+                retryAt = System.nanoTime() + backoff;
+            } else {
+                backoff = 0;
+            }
+        }
+    }
+
+    // Swaps the pending map out, so producers keep filling a fresh one while this is written
+    private List<PriceTick> take() {
+        lock.lock();
+        try {
+            List<PriceTick> batch = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Writes in flush-size chunks; returns how many ticks failed (collected into `failed`)
+    private int write(List<PriceTick> batch, String reason, List<PriceTick> failed) {
+        Counter flushes = Counter.builder("ingestor.write_behind.flushes").tag("reason", reason).register(registry);
+        for (int from = 0; from < batch.size(); from += flushSize) {
+            List<PriceTick> chunk = batch.subList(from, Math.min(from + flushSize, batch.size()));
+            if (Thread.currentThread() == flusher && flusher.isInterrupted()) {
+                // closing: leave the rest to close()
+                failed.addAll(chunk);
+                continue;
+            }
+            long t0 = System.nanoTime();
+            try {
+                written.increment(writer.applyAsInt(chunk));
+                flushes.increment();
+            } catch (RuntimeException e) {
+                log.warn("write-behind flush of {} ticks failed: {}", chunk.size(), e.toString());
+                failed.addAll(chunk);
+            } finally {
+                flushTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            }
+        }
+        return failed.size();
+    }
+
+    private void requeue(List<PriceTick> failed) {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                oldestNanos = System.nanoTime();
+            }
+            for (PriceTick t : failed) {
+                pending.putIfAbsent(Key.of(t), t);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Key(String source, String symbol, String vsCurrency, Instant tsBucket) {
+        static Key of(PriceTick t) {
+            return new Key(t.source(), t.symbol(), t.vsCurrency(), t.tsBucket());
+        }
+    }
+}
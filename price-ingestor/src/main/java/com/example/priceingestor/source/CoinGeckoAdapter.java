@@ -0,0 +1,231 @@
+package com.example.priceingestor.source;
+
+import com.example.priceingestor.client.MarketBatch;
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.CoinListing;
+import com.example.priceingestor.model.FixedPoint;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.CoinRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+// /coins/markets, one work unit per currency and page (the endpoint takes a single vs_currency).
+// With hot-path=simple, cycles instead poll the ranked universe from the coins table through
+// /simple/price batches that cover every currency in one call and carry numbers only; symbol and
+// name come from the coin cache. Until the first universe refresh, the pages are used.
+// With polling tiers on, cycles between full sweeps poll only the coins TierPlanner marks as due;
+// their simple:<i> units index this replica's own plan, which is why tiers refuse sharding.
+@Component
+@ConditionalOnProperty(name = "ingestor.sources.coingecko.enabled", havingValue = "true", matchIfMissing = true)
+public class CoinGeckoAdapter implements SourceAdapter {
+
+    private static final String PAGE = "/page:";
+    private static final String SIMPLE = "simple:";
+    // Pages past the last known page count still made units, for a universe that grew since
+    private static final int PAGE_HEADROOM = 2;
+
+    private final MarketClient client;
+    private final List<String> vsCurrencies;
+    private final String universe;
+    private final int perPage;
+    private final int maxPages;
+    private final int pageConcurrency;
+    private final Optional<TierPlanner> tiers;
+    private final CoinRepository coins;
+    private final boolean simpleHotPath;
+    private final int idsPerCall;
+    // /coins/markets pages decode into pooled columnar batches (see MarketBatchDecoder)
+    private final Queue<MarketBatch> spareBatches = new ConcurrentLinkedQueue<>();
+    // Pages the last full walk of each currency returned (universe=all)
+    private final Map<String, Integer> sweptPages = new ConcurrentHashMap<>();
+
+    public CoinGeckoAdapter(
+        MarketClient client,
+        @Value("${ingestor.vs-currencies}") List<String> vsCurrencies,
+        @Value("${ingestor.universe}") String universe,
+        @Value("${ingestor.per-page}") int perPage,
+        @Value("${ingestor.max-pages}") int maxPages,
+        @Value("${ingestor.page-concurrency}") int pageConcurrency,
+        Optional<TierPlanner> tiers,
+        CoinRepository coins,
+        @Value("${ingestor.coins.hot-path}") String hotPath,
+        @Value("${ingestor.coins.ids-per-call}") int idsPerCall
+    ) {
+        if (!"top".equals(universe) && !"all".equals(universe)) {
+            throw new IllegalArgumentException("ingestor.universe must be 'top' or 'all': " + universe);
+        }
+        if (!"simple".equals(hotPath) && !"markets".equals(hotPath)) {
+            throw new IllegalArgumentException("ingestor.coins.hot-path must be 'simple' or 'markets': " + hotPath);
+        }
+        this.client = client;
+        this.vsCurrencies = vsCurrencies;
+        this.universe = universe;
+        this.perPage = perPage;
+        this.maxPages = maxPages;
+        this.pageConcurrency = pageConcurrency;
+        this.tiers = tiers;
+        this.coins = coins;
+        this.simpleHotPath = "simple".equals(hotPath);
+        this.idsPerCall = idsPerCall;
+    }
+
+    @Override
+    public String source() {
+        return client.source();
+    }
+
+    // With universe=all, pages up to the page count seen at the last sweep (or implied by the ranked
+    // universe) plus PAGE_HEADROOM are units; only before any of that is known is it every page up
+    // to max-pages. Sharded replicas claim units blindly, so this keeps them off empty pages.
+    @Override
+    public List<String> workUnits(Instant bucket) {
+        int batches = -1;
+        if (tiers.isPresent()) {
+            TierPlanner.Plan plan = tiers.get().plan(bucket);
+            if (!plan.sweep()) {
+                batches = plan.batches().size();
+            }
+        } else if (simpleHotPath && !coins.universe().isEmpty()) {
+            batches = (coins.universe().size() + idsPerCall - 1) / idsPerCall;
+        }
+        if (batches >= 0) {
+            List<String> units = new ArrayList<>(batches);
+            for (int i = 0; i < batches; i++) {
+                units.add(SIMPLE + i);
+            }
+            return units;
+        }
+        List<String> units = new ArrayList<>();
+        for (String vsCurrency : vsCurrencies) {
+            int pageCount = "all".equals(universe) ? pageCount(vsCurrency) : 1;
+            for (int page = 1; page <= pageCount; page++) {
+                units.add(vsCurrency + PAGE + page);
+            }
+        }
+        return units;
+    }
+
+    // Currencies are fetched concurrently, each walking its own pages
+    @Override
+    public Flux<PriceTick> fetch(Instant tsBucket, List<String> units) {
+        String source = source();
+        Map<String, List<Integer>> pagesByCurrency = new LinkedHashMap<>();
+        List<Flux<PriceTick>> fetches = new ArrayList<>();
+        for (String unit : units) {
+            if (unit.startsWith(SIMPLE)) {
+                List<String> ids = simpleBatch(tsBucket, Integer.parseInt(unit.substring(SIMPLE.length())));
+                fetches.add(client.simplePrice(ids, vsCurrencies).flatMapIterable(prices -> toTicks(prices, tsBucket)));
+                continue;
+            }
+            int sep = unit.indexOf(PAGE);
+            pagesByCurrency.computeIfAbsent(unit.substring(0, sep), c -> new ArrayList<>())
+                .add(Integer.parseInt(unit.substring(sep + PAGE.length())));
+        }
+        pagesByCurrency.forEach((vsCurrency, pages) -> fetches.add(markets(vsCurrency, pages)
+            .concatMapIterable(batch -> toTicks(batch, vsCurrency, tsBucket))));
+        return Flux.merge(fetches);
+    }
+
+    private int pageCount(String vsCurrency) {
+        int universePages = (coins.universe().size() + perPage - 1) / perPage;
+        int known = Math.max(sweptPages.getOrDefault(vsCurrency, 0), universePages);
+        return known == 0 ? maxPages : Math.min(maxPages, known + PAGE_HEADROOM);
+    }
+
+    private List<String> simpleBatch(Instant tsBucket, int index) {
+        if (tiers.isPresent()) {
+            return tiers.get().plan(tsBucket).batches().get(index);
+        }
+        List<String> universe = coins.universe();
+        int from = Math.min(index * idsPerCall, universe.size());
+        return universe.subList(from, Math.min(from + idsPerCall, universe.size()));
+    }
+
+    // /simple/price carries no symbol or name; those come from the coin cache (or the last sweep)
+    private Optional<CoinListing> listing(String coinId) {
+        return coins.find(coinId)
+            .map(c -> new CoinListing(c.coinId(), c.symbol(), c.name()))
+            .or(() -> tiers.flatMap(t -> t.listing(coinId)));
+    }
+
+    private List<PriceTick> toTicks(JsonNode prices, Instant tsBucket) {
+        List<PriceTick> ticks = new ArrayList<>();
+        prices.fields().forEachRemaining(coin -> listing(coin.getKey()).ifPresent(listing -> {
+            for (String vsCurrency : vsCurrencies) {
+                JsonNode price = coin.getValue().get(vsCurrency);
+                if (price == null || !price.isNumber()) {
+                    continue;
+                }
+                String text = price.asText();
+                // Exact from the number's text, at the largest scale up to MAX_SCALE that fits (as MarketBatchDecoder)
+                for (int scale = FixedPoint.MAX_SCALE; scale >= 0; scale--) {
+                    long v = FixedPoint.parse(text, scale);
+                    if (v != FixedPoint.NULL) {
+                        ticks.add(new PriceTick(source(), listing.symbol(), listing.id(), listing.name(), vsCurrency,
+                            v, scale,
+                            number(coin.getValue().get(vsCurrency + "_market_cap")),
+                            number(coin.getValue().get(vsCurrency + "_24h_change")),
+                            tsBucket));
+                        break;
+                    }
+                }
+            }
+        }));
+        return ticks;
+    }
+
+    private static Double number(JsonNode node) {
+        return node == null || !node.isNumber() ? null : node.doubleValue();
+    }
+
+    private Flux<MarketBatch> markets(String vsCurrency, List<Integer> pages) {
+        if ("all".equals(universe) && pages.equals(IntStream.rangeClosed(1, pages.size()).boxed().toList())) {
+            // the whole universe: stop at the first short page instead of requesting every page
+            AtomicInteger walked = new AtomicInteger();
+            return client.allMarketBatches(vsCurrency, perPage, pages.size(), pageConcurrency, this::batch)
+                .doOnNext(batch -> walked.incrementAndGet())
+                .doOnComplete(() -> sweptPages.put(vsCurrency, walked.get()));
+        }
+        // Top N by 24h volume is implied by the endpoint's order
+        return client.pageBatches(vsCurrency, perPage, pages, pageConcurrency, this::batch);
+    }
+
+    private MarketBatch batch() {
+        MarketBatch batch = spareBatches.poll();
+        return batch != null ? batch : client.newBatch(perPage);
+    }
+
+    // Ticks still box market cap and change; the batch goes back to the pool once they are built
+    private List<PriceTick> toTicks(MarketBatch batch, String vsCurrency, Instant tsBucket) {
+        String source = source();
+        List<PriceTick> ticks = new ArrayList<>(batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+            String id = batch.coinId(row);
+            if (tiers.isPresent()) {
+                tiers.get().observe(id, batch.symbol(row), batch.name(row), batch.volume(row));
+            }
+            ticks.add(new PriceTick(source, batch.symbol(row), id, batch.name(row), vsCurrency,
+                batch.priceFp(row), batch.priceScale(row),
+                MarketBatch.boxed(batch.marketCap(row)),
+                MarketBatch.boxed(batch.pctChange24h(row)),
+                tsBucket));
+        }
+        batch.clear();
+        spareBatches.offer(batch);
+        return ticks;
+    }
+}
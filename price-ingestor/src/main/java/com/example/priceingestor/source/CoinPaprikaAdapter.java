@@ -0,0 +1,76 @@
+package com.example.priceingestor.source;
+
+import com.example.priceingestor.client.RequestBudget;
+import com.example.priceingestor.client.RequestPriority;
+import com.example.priceingestor.client.UpstreamHttp;
+import com.example.priceingestor.model.PaprikaTicker;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.replay.PayloadStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+// /tickers returns every coin in one call, ordered by rank; we keep the first `limit`.
+// All configured currencies are requested as quotes of that same call, so adding a currency
+// costs no extra requests.
+@Component
+@ConditionalOnProperty(name = "ingestor.sources.coinpaprika.enabled", havingValue = "true")
+public class CoinPaprikaAdapter implements SourceAdapter {
+
+    public static final String SOURCE = "coinpaprika";
+
+    private final UpstreamHttp http;
+    private final List<String> quotes;
+    private final int limit;
+
+    public CoinPaprikaAdapter(
+        WebClient.Builder builder,
+        MeterRegistry registry,
+        @Value("${ingestor.sources.coinpaprika.base-url}") String baseUrl,
+        @Value("${ingestor.sources.coinpaprika.calls-per-minute}") int callsPerMinute,
+        @Value("${ingestor.sources.coinpaprika.limit}") int limit,
+        @Value("${ingestor.vs-currencies}") List<String> vsCurrencies,
+        Optional<PayloadStore> recorder
+    ) {
+        this.http = new UpstreamHttp(builder, registry, SOURCE, baseUrl, null, null,
+            new RequestBudget(SOURCE, callsPerMinute, 1, 0), recorder.orElse(null));
+        this.quotes = vsCurrencies.stream().map(c -> c.toUpperCase(Locale.ROOT)).toList();
+        this.limit = limit;
+    }
+
+    @Override
+    public String source() {
+        return SOURCE;
+    }
+
+    @Override
+    public Flux<PriceTick> fetch(Instant tsBucket, List<String> units) {
+        return http.get(RequestPriority.LIVE, uri -> uri.path("/tickers")
+                .queryParam("quotes", String.join(",", quotes))
+                .build(), PaprikaTicker.class)
+            .filter(t -> t.quotes() != null && !t.quotes().isEmpty())
+            .take(limit)
+            .concatMapIterable(t -> toTicks(t, tsBucket));
+    }
+
+    // One tick per quoted currency; symbols and currencies are stored lower-case, as CoinGecko returns them
+    private List<PriceTick> toTicks(PaprikaTicker t, Instant tsBucket) {
+        List<PriceTick> ticks = new ArrayList<>(quotes.size());
+        for (String quote : quotes) {
+            PaprikaTicker.Quote q = t.quotes().get(quote);
+            if (q != null) {
+                ticks.add(new PriceTick(SOURCE, t.symbol().toLowerCase(Locale.ROOT), t.id(), t.name(),
+                    quote.toLowerCase(Locale.ROOT), q.price(), q.market_cap(), q.percent_change_24h(), tsBucket));
+            }
+        }
+        return ticks;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.priceingestor.source;
+
+// How often a coin is polled between full /coins/markets sweeps
+public enum PollingTier {
+    // every cycle, through /simple/price
+    FAST,
+    // every medium-every cycles, through /simple/price
+    MEDIUM,
+    // only in the full sweep
+    SLOW
+}
@@ -0,0 +1,24 @@
+package com.example.priceingestor.source;
+
+import com.example.priceingestor.model.PriceTick;
+import java.time.Instant;
+import java.util.List;
+import reactor.core.publisher.Flux;
+
+// One upstream price provider. Each adapter owns its HTTP client, decoder and request budget and
+// maps whatever the provider returns onto PriceTick, so everything downstream of the fetch
+// (change filter, journal, writers, candles) is provider-agnostic.
+public interface SourceAdapter {
+
+    // Value written to prices.source
+    String source();
+
+    // The pieces the snapshot for `bucket` splits into (e.g. result pages); with sharding on,
+    // replicas claim these individually. Providers that answer in a single call keep the default.
+    default List<String> workUnits(Instant bucket) {
+        return List.of("all");
+    }
+
+    // Fetches the given units and stamps every tick with tsBucket
+    Flux<PriceTick> fetch(Instant tsBucket, List<String> units);
+}
@@ -0,0 +1,217 @@
+package com.example.priceingestor.source;
+
+import com.example.priceingestor.model.CoinListing;
+import com.example.priceingestor.model.CoinMarket;
+import com.example.priceingestor.repository.PriceRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Decides which coins CoinGeckoAdapter polls on a given cycle.
+//
+// Every sweep-every cycles (and until the first re-tier has data) the full /coins/markets sweep
+// runs, which refreshes every coin and records its listing and 24h volume here. In between, only
+// FAST coins (every cycle) and MEDIUM coins (every medium-every cycles) are polled, in batched
+// /simple/price calls, so stablecoins and other quiet coins cost one request per sweep instead of
+// one per cycle. Re-tiering ranks coins by per-minute realized volatility over the lookback:
+// demand coins are always FAST, coins quieter than slow-below-volatility are always SLOW, the
+// most volatile of the rest fill FAST (if they trade at least min-fast-volume) and then MEDIUM.
+// The tiers are built from this replica's own sweeps, so two replicas would split a cycle into
+// different /simple/price batches (or one would still sweep); tiers therefore refuse sharding.
+@Component
+@ConditionalOnProperty(name = "ingestor.tiers.enabled", havingValue = "true")
+public class TierPlanner {
+
+    private static final Logger log = LoggerFactory.getLogger(TierPlanner.class);
+
+    private final PriceRepository prices;
+    private final String source;
+    private final String vsCurrency;
+    private final long periodMs;
+    private final Set<String> demand;
+    private final int fastSize;
+    private final int mediumSize;
+    private final double minFastVolume;
+    private final double slowBelowVolatility;
+    private final int mediumEvery;
+    private final int sweepEvery;
+    private final int idsPerCall;
+    private final Duration lookback;
+    private final Map<String, CoinListing> listings = new ConcurrentHashMap<>();
+    private final Map<String, Double> volumes = new ConcurrentHashMap<>();
+
+    private volatile Map<String, PollingTier> tiers = Map.of();
+    private Plan lastPlan;
+
+    public TierPlanner(
+        PriceRepository prices,
+        MeterRegistry registry,
+        @Value("${ingestor.source}") String source,
+        @Value("${ingestor.vs-currencies}") List<String> vsCurrencies,
+        @Value("${ingestor.period-ms}") long periodMs,
+        @Value("${ingestor.tiers.demand-coins}") List<String> demand,
+        @Value("${ingestor.tiers.fast-size}") int fastSize,
+        @Value("${ingestor.tiers.medium-size}") int mediumSize,
+        @Value("${ingestor.tiers.min-fast-volume}") double minFastVolume,
+        @Value("${ingestor.tiers.slow-below-volatility}") double slowBelowVolatility,
+        @Value("${ingestor.tiers.medium-every}") int mediumEvery,
+        @Value("${ingestor.tiers.sweep-every}") int sweepEvery,
+        @Value("${ingestor.tiers.ids-per-call}") int idsPerCall,
+        @Value("${ingestor.tiers.lookback-hours}") long lookbackHours,
+        @Value("${ingestor.sharding.enabled}") boolean sharding
+    ) {
+        if (sharding) {
+            throw new IllegalStateException("ingestor.tiers.enabled needs ingestor.sharding.enabled=false: "
+                + "replicas plan tiers from their own sweeps and would not claim the same batches");
+        }
+        if (mediumEvery < 1 || sweepEvery < 1 || idsPerCall < 1) {
+            throw new IllegalArgumentException("ingestor.tiers medium-every, sweep-every and ids-per-call must be >= 1");
+        }
+        this.prices = prices;
+        this.source = source;
+        // volatility is measured in the first configured currency
+        this.vsCurrency = vsCurrencies.get(0);
+        this.periodMs = periodMs;
+        this.demand = Set.copyOf(demand);
+        this.fastSize = fastSize;
+        this.mediumSize = mediumSize;
+        this.minFastVolume = minFastVolume;
+        this.slowBelowVolatility = slowBelowVolatility;
+        this.mediumEvery = mediumEvery;
+        this.sweepEvery = sweepEvery;
+        this.idsPerCall = idsPerCall;
+        this.lookback = Duration.ofHours(lookbackHours);
+        for (PollingTier tier : PollingTier.values()) {
+            Gauge.builder("ingestor.tiers.coins", this, p -> p.count(tier))
+                .tag("source", source)
+                .tag("tier", tier.name().toLowerCase())
+                .register(registry);
+        }
+    }
+
+    // Called for every coin seen in a full sweep
+    public void observe(CoinMarket m) {
+        observe(m.id(), m.symbol(), m.name(), m.total_volume() == null ? Double.NaN : m.total_volume());
+    }
+
+    // The listing is only replaced when it changed, so steady sweeps do not allocate here
+    public void observe(String id, String symbol, String name, double volume) {
+        CoinListing known = listings.get(id);
+        if (known == null || !Objects.equals(known.symbol(), symbol) || !Objects.equals(known.name(), name)) {
+            listings.put(id, new CoinListing(id, symbol, name));
+        }
+        if (!Double.isNaN(volume)) {
+            volumes.put(id, volume);
+        }
+    }
+
+    public Optional<CoinListing> listing(String coinId) {
+        return Optional.ofNullable(listings.get(coinId));
+    }
+
+    // Longest a coin can go without a row: one sweep interval
+    public Duration maxInterval() {
+        return Duration.ofMillis(periodMs * sweepEvery);
+    }
+
+    @Scheduled(fixedDelayString = "${ingestor.tiers.retier-interval-ms}")
+    public void retier() {
+        Map<String, Double> volatility = prices.realizedVolatility(source, vsCurrency, Instant.now().minus(lookback));
+        Set<String> known = new HashSet<>(listings.keySet());
+        known.retainAll(volatility.keySet());
+        demand.stream().filter(listings::containsKey).forEach(known::add);
+        if (known.isEmpty()) {
+            return;
+        }
+        Map<String, Double> vol = new HashMap<>();
+        known.forEach(id -> vol.put(id, volatility.getOrDefault(id, 0.0)));
+        tiers = assign(vol, volumes, demand, fastSize, mediumSize, minFastVolume, slowBelowVolatility);
+        log.info("re-tiered {} coins: {} fast, {} medium, {} slow",
+            tiers.size(), count(PollingTier.FAST), count(PollingTier.MEDIUM), count(PollingTier.SLOW));
+    }
+
+    // What to fetch for the cycle at `bucket`; the same plan is returned for repeated calls within a cycle
+    public synchronized Plan plan(Instant bucket) {
+        if (lastPlan != null && lastPlan.bucket().equals(bucket)) {
+            return lastPlan;
+        }
+        long cycle = Math.floorDiv(bucket.toEpochMilli(), periodMs);
+        Map<String, PollingTier> current = tiers;
+        if (current.isEmpty() || cycle % sweepEvery == 0) {
+            lastPlan = new Plan(bucket, true, List.of());
+            return lastPlan;
+        }
+        boolean mediumDue = cycle % mediumEvery == 0;
+        List<String> due = current.entrySet().stream()
+            .filter(e -> e.getValue() == PollingTier.FAST || (mediumDue && e.getValue() == PollingTier.MEDIUM))
+            .map(Map.Entry::getKey)
+            .filter(listings::containsKey)
+            .sorted()
+            .toList();
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < due.size(); i += idsPerCall) {
+            batches.add(due.subList(i, Math.min(due.size(), i + idsPerCall)));
+        }
+        lastPlan = new Plan(bucket, false, batches);
+        return lastPlan;
+    }
+
+    static Map<String, PollingTier> assign(
+        Map<String, Double> volatility,
+        Map<String, Double> volumes,
+        Set<String> demand,
+        int fastSize,
+        int mediumSize,
+        double minFastVolume,
+        double slowBelowVolatility
+    ) {
+        Map<String, PollingTier> assigned = new HashMap<>();
+        int fast = 0;
+        int medium = 0;
+        List<String> ranked = volatility.keySet().stream()
+            .sorted(Comparator.comparing((String id) -> volatility.get(id)).reversed().thenComparing(id -> id))
+            .toList();
+        for (String id : ranked) {
+            PollingTier tier;
+            if (demand.contains(id)) {
+                tier = PollingTier.FAST;
+            } else if (volatility.get(id) < slowBelowVolatility) {
+                tier = PollingTier.SLOW;
+            } else if (fast < fastSize && volumes.getOrDefault(id, 0.0) >= minFastVolume) {
+                tier = PollingTier.FAST;
+                fast++;
+            } else if (medium < mediumSize) {
+                tier = PollingTier.MEDIUM;
+                medium++;
+            } else {
+                tier = PollingTier.SLOW;
+            }
+            assigned.put(id, tier);
+        }
+        return assigned;
+    }
+
+    private int count(PollingTier tier) {
+        return (int) tiers.values().stream().filter(t -> t == tier).count();
+    }
+
+    // sweep = run the full /coins/markets walk; otherwise poll these /simple/price id batches
+    public record Plan(Instant bucket, boolean sweep, List<List<String>> batches) {}
+}
@@ -0,0 +1,8 @@
+-- Fixed-point price storage (ingestor.price-storage=fixed): price_fp holds the price times
+-- 10^coins.price_scale as a BIGINT, and price stays NULL. A coin's scale is picked once, from the first
+-- price written for it; a tick that cannot be stored exactly at that scale is written to price instead.
+-- Readers take COALESCE(p.price, p.price_fp / 10::numeric ^ c.price_scale) over a join on coin_key.
+ALTER TABLE coins ADD COLUMN IF NOT EXISTS price_scale SMALLINT;
+
+ALTER TABLE prices ADD COLUMN IF NOT EXISTS price_fp BIGINT;
+ALTER TABLE prices ALTER COLUMN price DROP NOT NULL;
@@ -0,0 +1,100 @@
+-- prices v2: the same minute rows without the per-row text. source and vs_currency become SMALLINT keys
+-- into two small dimension tables, the coin is coin_key into coins, and the surrogate id and ingest-time
+-- ts are gone: the primary key is the natural one. Fixed-width columns come first, widest first, so the
+-- row has no alignment padding (64 bytes with price_fp set, against ~110 for a v1 row) and the primary
+-- key index holds 16 bytes of key instead of three text columns plus a second index on id.
+-- market_cap and pct_change_24h are float8: both writers have always bound them as doubles.
+--
+-- Rows move over online (PricesV2Migrator): an AFTER INSERT trigger on prices copies every new row, and a
+-- batched copy walks the existing partitions a few pages at a time. Readers and writers switch with
+-- ingestor.prices-schema=v2; readers then go through prices_v2_rows, which has the v1 column names.
+CREATE TABLE IF NOT EXISTS price_sources (
+  source_key SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  source TEXT NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS price_currencies (
+  currency_key SMALLINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  vs_currency TEXT NOT NULL UNIQUE
+);
+
+CREATE TABLE prices_v2 (
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  price_fp BIGINT,
+  market_cap DOUBLE PRECISION,
+  pct_change_24h DOUBLE PRECISION,
+  coin_key INTEGER NOT NULL,
+  source_key SMALLINT NOT NULL,
+  currency_key SMALLINT NOT NULL,
+  price NUMERIC(38, 12),
+  PRIMARY KEY (source_key, currency_key, coin_key, ts_bucket)
+) PARTITION BY RANGE (ts_bucket);
+
+-- the same months as prices (PartitionManager keeps both ahead of ingestion from here on)
+DO $$
+DECLARE
+  m DATE := COALESCE(
+    (SELECT min(to_date(substring(c.relname FROM 'prices_p(\d{6})'), 'YYYYMM'))
+     FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+     WHERE i.inhparent = 'prices'::regclass),
+    date_trunc('month', now() AT TIME ZONE 'UTC')::date);
+  last_month DATE := (date_trunc('month', now() AT TIME ZONE 'UTC') + interval '3 months')::date;
+BEGIN
+  WHILE m <= last_month LOOP
+    EXECUTE format(
+      'CREATE TABLE IF NOT EXISTS %I PARTITION OF prices_v2 FOR VALUES FROM (%L) TO (%L)',
+      'prices_v2_p' || to_char(m, 'YYYYMM'),
+      m::timestamp AT TIME ZONE 'UTC',
+      (m + interval '1 month')::timestamp AT TIME ZONE 'UTC');
+    m := (m + interval '1 month')::date;
+  END LOOP;
+END $$;
+
+CREATE VIEW prices_v2_rows AS
+SELECT s.source, c.symbol, c.coin_id, c.name, p.coin_key, cu.vs_currency,
+       p.price, p.price_fp, p.market_cap, p.pct_change_24h, p.ts_bucket
+FROM prices_v2 p
+JOIN price_sources s ON s.source_key = p.source_key
+JOIN price_currencies cu ON cu.currency_key = p.currency_key
+JOIN coins c ON c.coin_key = p.coin_key;
+
+-- Copies one new prices row into prices_v2, creating dimension rows it has not seen. The migrator
+-- attaches it to prices when it starts, so nothing is written twice before a migration is wanted.
+CREATE OR REPLACE FUNCTION prices_v2_dual_write() RETURNS trigger LANGUAGE plpgsql AS $$
+DECLARE
+  sk SMALLINT;
+  ck SMALLINT;
+  kk INTEGER := NEW.coin_key;
+BEGIN
+  SELECT source_key INTO sk FROM price_sources WHERE source = NEW.source;
+  IF sk IS NULL THEN
+    INSERT INTO price_sources (source) VALUES (NEW.source) ON CONFLICT (source) DO NOTHING;
+    SELECT source_key INTO sk FROM price_sources WHERE source = NEW.source;
+  END IF;
+  SELECT currency_key INTO ck FROM price_currencies WHERE vs_currency = NEW.vs_currency;
+  IF ck IS NULL THEN
+    INSERT INTO price_currencies (vs_currency) VALUES (NEW.vs_currency) ON CONFLICT (vs_currency) DO NOTHING;
+    SELECT currency_key INTO ck FROM price_currencies WHERE vs_currency = NEW.vs_currency;
+  END IF;
+  IF kk IS NULL THEN
+    INSERT INTO coins (coin_id, symbol, name) VALUES (NEW.coin_id, NEW.symbol, COALESCE(NEW.name, NEW.coin_id))
+    ON CONFLICT (coin_id) DO NOTHING;
+    SELECT coin_key INTO kk FROM coins WHERE coin_id = NEW.coin_id;
+  END IF;
+  INSERT INTO prices_v2 (ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price)
+  VALUES (NEW.ts_bucket, NEW.price_fp, NEW.market_cap, NEW.pct_change_24h, kk, sk, ck, NEW.price)
+  ON CONFLICT DO NOTHING;
+  RETURN NULL;
+END $$;
+
+-- Progress of the batched copy: the v1 partition being walked and the next heap page to copy
+CREATE TABLE IF NOT EXISTS prices_v2_migration (
+  id BOOLEAN PRIMARY KEY DEFAULT true CHECK (id),
+  started_at TIMESTAMPTZ,
+  partition_name TEXT,
+  next_page BIGINT NOT NULL DEFAULT 0,
+  rows_copied BIGINT NOT NULL DEFAULT 0,
+  completed_at TIMESTAMPTZ
+);
+
+INSERT INTO prices_v2_migration DEFAULT VALUES ON CONFLICT DO NOTHING;
@@ -0,0 +1,31 @@
+-- The newest row per (source, symbol, vs_currency), upserted by PriceSink in the same transaction as
+-- the batch that wrote it, so "current price of every coin" reads one small table instead of a
+-- DISTINCT ON over prices. An upsert only replaces an older bucket: replays and backfills that write
+-- history never move a row backwards. price is the exact value whichever column prices stored it in.
+CREATE TABLE IF NOT EXISTS latest_prices (
+  source TEXT NOT NULL,
+  symbol TEXT NOT NULL,
+  vs_currency TEXT NOT NULL,
+  price NUMERIC(38, 12) NOT NULL,
+  market_cap DOUBLE PRECISION,
+  pct_change_24h DOUBLE PRECISION,
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  PRIMARY KEY (source, symbol, vs_currency)
+);
+
+-- Seed from recent rows of either layout (as V9 seeds coins); older series fill in on their next write
+INSERT INTO latest_prices (source, symbol, vs_currency, price, market_cap, pct_change_24h, ts_bucket)
+SELECT DISTINCT ON (source, symbol, vs_currency)
+       source, symbol, vs_currency, price, market_cap, pct_change_24h, ts_bucket
+FROM (SELECT p.source, p.symbol, p.vs_currency, COALESCE(p.price, p.price_fp / 10::numeric ^ c.price_scale) AS price,
+             p.market_cap, p.pct_change_24h, p.ts_bucket
+      FROM prices p LEFT JOIN coins c ON c.coin_key = p.coin_key
+      WHERE p.ts_bucket >= now() - interval '7 days'
+      UNION ALL
+      SELECT p.source, p.symbol, p.vs_currency, COALESCE(p.price, p.price_fp / 10::numeric ^ c.price_scale),
+             p.market_cap, p.pct_change_24h, p.ts_bucket
+      FROM prices_v2_rows p LEFT JOIN coins c ON c.coin_key = p.coin_key
+      WHERE p.ts_bucket >= now() - interval '7 days') recent
+WHERE price IS NOT NULL
+ORDER BY source, symbol, vs_currency, ts_bucket DESC
+ON CONFLICT DO NOTHING;
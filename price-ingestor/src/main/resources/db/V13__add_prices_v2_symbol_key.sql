@@ -0,0 +1,81 @@
+-- prices is unique per (source, symbol, vs_currency, ts_bucket) (V8), but the prices_v2 key has coin_key
+-- where v1 has the symbol, so two coins sharing a ticker could both land in one bucket, and every reader
+-- keyed by symbol (candles, latest_prices, gaps, the change filter) would mix their prices. prices_v2 now
+-- carries the row's symbol as a key into a third dictionary, with a unique index matching v1's; the
+-- writers' ON CONFLICT DO NOTHING then keeps the first coin, as v1 does. The INTEGER goes after price,
+-- so it only costs its own four bytes.
+--
+-- Nothing here rewrites or scans prices_v2, so the dual-write trigger on prices never waits behind this
+-- migration: the column is added nullable (a catalog change), rows copied before it are keyed in batches
+-- by PricesV2Migrator, the unique index is built concurrently by PricesV2SymbolIndexMigration (V14), and
+-- NOT NULL is a NOT VALID check that the migrator validates once every row has its key. The two ALTERs
+-- on prices_v2 still need a moment of ACCESS EXCLUSIVE; rather than queue inserts behind a long
+-- transaction while waiting for it, the migration fails fast and is retried on the next start.
+SET LOCAL lock_timeout = '5s';
+
+CREATE TABLE IF NOT EXISTS price_symbols (
+  symbol_key INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  symbol TEXT NOT NULL UNIQUE
+);
+
+ALTER TABLE prices_v2 ADD COLUMN IF NOT EXISTS symbol_key INTEGER;
+
+ALTER TABLE prices_v2 ADD CONSTRAINT prices_v2_symbol_key_not_null CHECK (symbol_key IS NOT NULL) NOT VALID;
+
+-- Progress of the symbol_key backfill: the prices_v2 partition being walked and its next heap page.
+-- A copy that had already completed still owes the backfill.
+ALTER TABLE prices_v2_migration
+  ADD COLUMN IF NOT EXISTS copied_at TIMESTAMPTZ,
+  ADD COLUMN IF NOT EXISTS symbol_partition_name TEXT,
+  ADD COLUMN IF NOT EXISTS symbol_next_page BIGINT NOT NULL DEFAULT 0;
+
+UPDATE prices_v2_migration SET copied_at = completed_at, completed_at = NULL WHERE completed_at IS NOT NULL;
+
+-- The symbol a row was written under, as v1 reads it, rather than the coin's current one. Rows copied
+-- before V13 fall back to the coin's symbol until the backfill keys them.
+CREATE OR REPLACE VIEW prices_v2_rows AS
+SELECT s.source, COALESCE(sy.symbol, c.symbol) AS symbol, c.coin_id, c.name, p.coin_key, cu.vs_currency,
+       p.price, p.price_fp, p.market_cap, p.pct_change_24h, p.ts_bucket
+FROM prices_v2 p
+JOIN price_sources s ON s.source_key = p.source_key
+JOIN price_currencies cu ON cu.currency_key = p.currency_key
+LEFT JOIN price_symbols sy ON sy.symbol_key = p.symbol_key
+JOIN coins c ON c.coin_key = p.coin_key;
+
+-- As in V11, plus the symbol key. A prices row with neither coin_key nor coin_id cannot be given a
+-- coin_key, so it is left out of prices_v2 rather than failing the prices insert that fired the trigger.
+CREATE OR REPLACE FUNCTION prices_v2_dual_write() RETURNS trigger LANGUAGE plpgsql AS $$
+DECLARE
+  sk SMALLINT;
+  ck SMALLINT;
+  yk INTEGER;
+  kk INTEGER := NEW.coin_key;
+BEGIN
+  IF kk IS NULL AND NEW.coin_id IS NULL THEN
+    RETURN NULL;
+  END IF;
+  SELECT source_key INTO sk FROM price_sources WHERE source = NEW.source;
+  IF sk IS NULL THEN
+    INSERT INTO price_sources (source) VALUES (NEW.source) ON CONFLICT (source) DO NOTHING;
+    SELECT source_key INTO sk FROM price_sources WHERE source = NEW.source;
+  END IF;
+  SELECT currency_key INTO ck FROM price_currencies WHERE vs_currency = NEW.vs_currency;
+  IF ck IS NULL THEN
+    INSERT INTO price_currencies (vs_currency) VALUES (NEW.vs_currency) ON CONFLICT (vs_currency) DO NOTHING;
+    SELECT currency_key INTO ck FROM price_currencies WHERE vs_currency = NEW.vs_currency;
+  END IF;
+  SELECT symbol_key INTO yk FROM price_symbols WHERE symbol = NEW.symbol;
+  IF yk IS NULL THEN
+    INSERT INTO price_symbols (symbol) VALUES (NEW.symbol) ON CONFLICT (symbol) DO NOTHING;
+    SELECT symbol_key INTO yk FROM price_symbols WHERE symbol = NEW.symbol;
+  END IF;
+  IF kk IS NULL THEN
+    INSERT INTO coins (coin_id, symbol, name) VALUES (NEW.coin_id, NEW.symbol, COALESCE(NEW.name, NEW.coin_id))
+    ON CONFLICT (coin_id) DO NOTHING;
+    SELECT coin_key INTO kk FROM coins WHERE coin_id = NEW.coin_id;
+  END IF;
+  INSERT INTO prices_v2 (ts_bucket, price_fp, market_cap, pct_change_24h, coin_key, source_key, currency_key, price, symbol_key)
+  VALUES (NEW.ts_bucket, NEW.price_fp, NEW.market_cap, NEW.pct_change_24h, kk, sk, ck, NEW.price, yk)
+  ON CONFLICT DO NOTHING;
+  RETURN NULL;
+END $$;
@@ -0,0 +1,12 @@
+-- One row per tick the change filter suppressed in heartbeat mode: the symbol was observed at ts_bucket
+-- and nothing had changed since its last row. A price_heartbeats row (V4) only says that some page or
+-- batch of the source answered in that minute, so PriceRepository.findPriceAt carries a row forward
+-- only over minutes that have this marker for the symbol itself; a failed page or batch, or a coin that
+-- dropped out of the universe, leaves the minute empty instead.
+CREATE TABLE IF NOT EXISTS price_unchanged (
+  source TEXT NOT NULL,
+  symbol TEXT NOT NULL,
+  vs_currency TEXT NOT NULL,
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  PRIMARY KEY (source, symbol, vs_currency, ts_bucket)
+);
@@ -0,0 +1,12 @@
+-- Work units (a /coins/markets page, a /simple/price batch, a whole source) whose fetch failed in a
+-- live cycle. A symbol missing from a bucket in which part of its source failed may have been lost to
+-- that failure, so the gap scanner treats such minutes like whole-source outages and queues repairs;
+-- a symbol missing while every unit of its source succeeded simply left the universe.
+CREATE TABLE IF NOT EXISTS failed_fetches (
+  source TEXT NOT NULL,
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  work_unit TEXT NOT NULL,
+  error TEXT,
+  failed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (source, ts_bucket, work_unit)
+);
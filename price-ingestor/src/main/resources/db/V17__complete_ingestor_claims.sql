@@ -0,0 +1,4 @@
+-- A claim is done once its unit has been fetched. Until then, another replica's leftover pass may take
+-- it over when the claimer's heartbeat has expired or the claim has been pending longer than the steal
+-- delay; a replica whose fetch failed deletes its claim so the unit is picked up in the same bucket.
+ALTER TABLE ingestor_claims ADD COLUMN IF NOT EXISTS completed_at TIMESTAMPTZ;
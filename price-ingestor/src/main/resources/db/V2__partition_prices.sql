@@ -0,0 +1,48 @@
+-- Convert prices into monthly range partitions on ts_bucket.
+-- A unique index on a partitioned table must contain the partition key, so the BIGSERIAL id
+-- keeps its default but is no longer indexed; (source, symbol, ts_bucket) stays unique and
+-- is maintained per partition. Future partitions are created by the ingestor's PartitionManager.
+ALTER TABLE prices RENAME TO prices_unpartitioned;
+ALTER INDEX uq_prices_source_symbol_bucket RENAME TO uq_prices_unpartitioned_source_symbol_bucket;
+
+CREATE TABLE prices (
+  id BIGINT NOT NULL DEFAULT nextval('prices_id_seq'),
+  source TEXT NOT NULL,
+  symbol TEXT NOT NULL,
+  coin_id TEXT NOT NULL,
+  name TEXT NOT NULL,
+  price NUMERIC(38, 12) NOT NULL,
+  market_cap NUMERIC(38, 2),
+  pct_change_24h NUMERIC(12, 6),
+  ts TIMESTAMPTZ NOT NULL DEFAULT now(),
+  ts_bucket TIMESTAMPTZ NOT NULL
+) PARTITION BY RANGE (ts_bucket);
+
+-- keep the sequence alive when the old table is dropped
+ALTER SEQUENCE prices_id_seq OWNED BY prices.id;
+
+-- avoid duplicates per (source, symbol, minute)
+CREATE UNIQUE INDEX uq_prices_source_symbol_bucket
+  ON prices (source, symbol, ts_bucket);
+
+-- one partition per UTC month, from the oldest existing row up to three months ahead
+DO $$
+DECLARE
+  m DATE := date_trunc('month', COALESCE((SELECT min(ts_bucket) FROM prices_unpartitioned), now()) AT TIME ZONE 'UTC')::date;
+  last_month DATE := (date_trunc('month', now() AT TIME ZONE 'UTC') + interval '3 months')::date;
+BEGIN
+  WHILE m <= last_month LOOP
+    EXECUTE format(
+      'CREATE TABLE IF NOT EXISTS %I PARTITION OF prices FOR VALUES FROM (%L) TO (%L)',
+      'prices_p' || to_char(m, 'YYYYMM'),
+      m::timestamp AT TIME ZONE 'UTC',
+      (m + interval '1 month')::timestamp AT TIME ZONE 'UTC');
+    m := (m + interval '1 month')::date;
+  END LOOP;
+END $$;
+
+INSERT INTO prices (id, source, symbol, coin_id, name, price, market_cap, pct_change_24h, ts, ts_bucket)
+SELECT id, source, symbol, coin_id, name, price, market_cap, pct_change_24h, ts, ts_bucket
+FROM prices_unpartitioned;
+
+DROP TABLE prices_unpartitioned;
@@ -0,0 +1,15 @@
+-- OHLC candles maintained by the ingestor.
+-- Raw prices rows are the 1m level; 5m is rolled up from prices, 1h from 5m and 1d from 1h.
+-- bucket_start is aligned to UTC (date_bin origin 2000-01-01 00:00:00+00).
+CREATE TABLE IF NOT EXISTS price_candles (
+  source TEXT NOT NULL,
+  symbol TEXT NOT NULL,
+  resolution TEXT NOT NULL,
+  bucket_start TIMESTAMPTZ NOT NULL,
+  open NUMERIC(38, 12) NOT NULL,
+  high NUMERIC(38, 12) NOT NULL,
+  low NUMERIC(38, 12) NOT NULL,
+  close NUMERIC(38, 12) NOT NULL,
+  samples INTEGER NOT NULL,
+  PRIMARY KEY (source, symbol, resolution, bucket_start)
+);
@@ -0,0 +1,10 @@
+-- One row per (source, minute) that was observed, written when the change filter runs in heartbeat
+-- mode. A symbol with no prices row at ts_bucket but a heartbeat for its source was unchanged
+-- (carry the last observation forward); no heartbeat either means the source was not observed.
+CREATE TABLE IF NOT EXISTS price_heartbeats (
+  source TEXT NOT NULL,
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  observed INTEGER NOT NULL,
+  suppressed INTEGER NOT NULL,
+  PRIMARY KEY (source, ts_bucket)
+);
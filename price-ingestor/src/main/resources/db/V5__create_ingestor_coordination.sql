@@ -0,0 +1,16 @@
+-- Coordination between price-ingestor replicas.
+-- Members heartbeat every cycle; one whose heartbeat is older than two periods counts as dead.
+CREATE TABLE IF NOT EXISTS ingestor_members (
+  member_id TEXT PRIMARY KEY,
+  heartbeat_at TIMESTAMPTZ NOT NULL
+);
+
+-- One claim per unit of work (e.g. a /coins/markets page) per bucket. Whichever replica's INSERT
+-- wins the primary key fetches that unit, so no unit is fetched twice for the same bucket.
+CREATE TABLE IF NOT EXISTS ingestor_claims (
+  ts_bucket TIMESTAMPTZ NOT NULL,
+  work_unit TEXT NOT NULL,
+  member_id TEXT NOT NULL,
+  claimed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (ts_bucket, work_unit)
+);
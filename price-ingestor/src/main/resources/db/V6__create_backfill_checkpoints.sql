@@ -0,0 +1,11 @@
+-- One row per completed backfill window; written in the same transaction as the window's prices,
+-- so a killed backfill resumes with the first window that has no row here.
+CREATE TABLE IF NOT EXISTS backfill_checkpoints (
+  source TEXT NOT NULL,
+  coin_id TEXT NOT NULL,
+  window_start TIMESTAMPTZ NOT NULL,
+  window_end TIMESTAMPTZ NOT NULL,
+  rows_written INTEGER NOT NULL,
+  completed_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (source, coin_id, window_start)
+);
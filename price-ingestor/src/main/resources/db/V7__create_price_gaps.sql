@@ -0,0 +1,19 @@
+-- Missing runs of buckets per symbol found by the gap scanner, and their repair status.
+-- Readers can join this to tell an outage from a quiet market instead of interpolating over it.
+CREATE TABLE IF NOT EXISTS price_gaps (
+  source TEXT NOT NULL,
+  symbol TEXT NOT NULL,
+  coin_id TEXT NOT NULL,
+  name TEXT NOT NULL,
+  gap_start TIMESTAMPTZ NOT NULL,            -- first missing bucket
+  gap_end TIMESTAMPTZ NOT NULL,              -- last missing bucket
+  missing_buckets INTEGER NOT NULL,
+  status TEXT NOT NULL DEFAULT 'open',       -- open | repaired | unrepairable
+  attempts INTEGER NOT NULL DEFAULT 0,
+  detected_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (source, symbol, gap_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_price_gaps_open
+  ON price_gaps (detected_at) WHERE status = 'open';
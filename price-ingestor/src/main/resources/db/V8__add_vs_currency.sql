@@ -0,0 +1,22 @@
+-- Quote currency as a dimension, so one ingestor can store usd, eur, btc, ... side by side.
+-- Every row written before this was quoted in usd. A constant default makes ADD COLUMN a
+-- catalog-only change, so existing partitions are not rewritten.
+ALTER TABLE prices ADD COLUMN IF NOT EXISTS vs_currency TEXT NOT NULL DEFAULT 'usd';
+
+-- Duplicate suppression is per currency now: the same symbol and bucket may exist once per quote.
+-- (Building the index on a partitioned table blocks writes per partition while it runs.)
+DROP INDEX IF EXISTS uq_prices_source_symbol_bucket;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_prices_source_symbol_currency_bucket
+  ON prices (source, symbol, vs_currency, ts_bucket);
+
+ALTER TABLE price_candles ADD COLUMN IF NOT EXISTS vs_currency TEXT NOT NULL DEFAULT 'usd';
+ALTER TABLE price_candles DROP CONSTRAINT IF EXISTS price_candles_pkey;
+ALTER TABLE price_candles ADD PRIMARY KEY (source, symbol, vs_currency, resolution, bucket_start);
+
+ALTER TABLE price_gaps ADD COLUMN IF NOT EXISTS vs_currency TEXT NOT NULL DEFAULT 'usd';
+ALTER TABLE price_gaps DROP CONSTRAINT IF EXISTS price_gaps_pkey;
+ALTER TABLE price_gaps ADD PRIMARY KEY (source, symbol, vs_currency, gap_start);
+
+ALTER TABLE backfill_checkpoints ADD COLUMN IF NOT EXISTS vs_currency TEXT NOT NULL DEFAULT 'usd';
+ALTER TABLE backfill_checkpoints DROP CONSTRAINT IF EXISTS backfill_checkpoints_pkey;
+ALTER TABLE backfill_checkpoints ADD PRIMARY KEY (source, coin_id, vs_currency, window_start);
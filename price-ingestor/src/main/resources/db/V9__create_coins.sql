@@ -0,0 +1,26 @@
+-- Coin metadata lives once per coin instead of on every per-minute row. New prices rows carry the
+-- integer coin_key and leave coin_id/name NULL; rows written before this keep their text columns,
+-- so readers resolve with COALESCE(p.coin_id, c.coin_id) over a LEFT JOIN on coin_key.
+-- market_rank is the coin's position in the last universe refresh (NULL once it drops out).
+CREATE TABLE IF NOT EXISTS coins (
+  coin_key SERIAL PRIMARY KEY,
+  coin_id TEXT NOT NULL UNIQUE,
+  symbol TEXT NOT NULL,
+  name TEXT NOT NULL,
+  market_rank INTEGER,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS ix_coins_market_rank ON coins (market_rank) WHERE market_rank IS NOT NULL;
+
+-- No foreign key: it would add a lookup to every insert on the hot path, and coins rows are never deleted.
+ALTER TABLE prices ADD COLUMN IF NOT EXISTS coin_key INTEGER;
+ALTER TABLE prices ALTER COLUMN coin_id DROP NOT NULL;
+ALTER TABLE prices ALTER COLUMN name DROP NOT NULL;
+
+-- Seed from recent rows so the first cycles after the upgrade resolve without upstream calls
+INSERT INTO coins (coin_id, symbol, name)
+SELECT DISTINCT ON (coin_id) coin_id, symbol, name FROM prices
+WHERE ts_bucket >= now() - interval '7 days'
+ORDER BY coin_id, ts_bucket DESC
+ON CONFLICT (coin_id) DO NOTHING;
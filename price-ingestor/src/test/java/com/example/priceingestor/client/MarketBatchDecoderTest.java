@@ -0,0 +1,59 @@
+package com.example.priceingestor.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.priceingestor.model.CoinMarket;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MarketBatchDecoderTest {
+
+	private static final String BODY = """
+			[{"id":"bitcoin","symbol":"btc","name":"Bitcoin","image":"https://x/btc.png","current_price":65000.5,
+			  "market_cap":1200000000000,"roi":null,"total_volume":3.1E10,"price_change_percentage_24h":-1.5},
+			 {"id":"ethereum","symbol":"eth","name":"Ethereum","current_price":3000,"market_cap":null,
+			  "roi":{"times":12.5,"currency":"btc","percentage":1250.1},"sparkline":[1,2,[3]],
+			  "price_change_percentage_24h":null},
+			 {"symbol":"noid","current_price":1.0},
+			 {"id":"z\\u00fcrich-coin","symbol":"z\\u00fcr","name":"Zürich \\"Coin\\"","current_price":0.000001234}]
+			""";
+
+	@Test
+	void everyChunkingDecodesLikeTheRecordPath() throws Exception {
+		byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+		List<CoinMarket> expected = new ObjectMapper()
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+				.readerFor(CoinMarket.class).<CoinMarket>readValues(bytes).readAll().stream()
+				.filter(m -> m.id() != null)
+				.toList();
+		MarketBatchDecoder decoder = new MarketBatchDecoder(new CoinInterner());
+		MarketBatch batch = new MarketBatch(decoder.strings(), 1);
+
+		for (int chunk = 1; chunk <= bytes.length; chunk++) {
+			MarketBatchDecoder.Session session = decoder.open(batch);
+			for (int from = 0; from < bytes.length; from += chunk) {
+				session.feed(ByteBuffer.wrap(bytes, from, Math.min(chunk, bytes.length - from)).slice());
+			}
+			session.finish();
+
+			assertThat(rows(batch)).as("chunk size %d", chunk).isEqualTo(expected);
+		}
+		// each distinct id, symbol and name was allocated once across all those decodes
+		assertThat(decoder.strings().size()).isEqualTo(10);
+	}
+
+	private static List<CoinMarket> rows(MarketBatch batch) {
+		List<CoinMarket> rows = new ArrayList<>();
+		for (int i = 0; i < batch.size(); i++) {
+			rows.add(new CoinMarket(batch.coinId(i), batch.symbol(i), batch.name(i),
+					MarketBatch.boxed(batch.price(i)), MarketBatch.boxed(batch.marketCap(i)),
+					MarketBatch.boxed(batch.pctChange24h(i)), MarketBatch.boxed(batch.volume(i))));
+		}
+		return rows;
+	}
+}
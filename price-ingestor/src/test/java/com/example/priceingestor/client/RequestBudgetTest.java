@@ -0,0 +1,72 @@
+package com.example.priceingestor.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+class RequestBudgetTest {
+
+	private final VirtualTimeScheduler time = VirtualTimeScheduler.create();
+
+	@Test
+	void liveCallsJumpTheQueue() {
+		// one token, refilled every 100ms
+		RequestBudget budget = budget(600, 1);
+		budget.acquire(RequestPriority.LIVE).subscribe();
+
+		List<RequestPriority> order = new ArrayList<>();
+		budget.acquire(RequestPriority.METADATA).subscribe(null, null, () -> order.add(RequestPriority.METADATA));
+		budget.acquire(RequestPriority.BACKFILL).subscribe(null, null, () -> order.add(RequestPriority.BACKFILL));
+		budget.acquire(RequestPriority.LIVE).subscribe(null, null, () -> order.add(RequestPriority.LIVE));
+		assertThat(order).isEmpty();
+
+		time.advanceTimeBy(Duration.ofMillis(100));
+		assertThat(order).containsExactly(RequestPriority.LIVE);
+
+		time.advanceTimeBy(Duration.ofMillis(200));
+		assertThat(order).containsExactly(RequestPriority.LIVE, RequestPriority.BACKFILL, RequestPriority.METADATA);
+	}
+
+	@Test
+	void rateLimitPausesEveryCaller() {
+		// 1ms per token once the pause is over
+		RequestBudget budget = budget(60_000, 10);
+		budget.onRateLimited(Duration.ofMillis(300));
+
+		AtomicBoolean granted = new AtomicBoolean();
+		budget.acquire(RequestPriority.LIVE).subscribe(null, null, () -> granted.set(true));
+
+		time.advanceTimeBy(Duration.ofMillis(299));
+		assertThat(granted).isFalse();
+
+		time.advanceTimeBy(Duration.ofMillis(2));
+		assertThat(granted).isTrue();
+	}
+
+	@Test
+	void parsesRetryAfterSeconds() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, "42");
+
+		assertThat(RequestBudget.retryAfter(headers)).contains(Duration.ofSeconds(42));
+	}
+
+	@Test
+	void retryAfterDateInThePastMeansNow() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, "Wed, 21 Oct 2015 07:28:00 GMT");
+
+		assertThat(RequestBudget.retryAfter(headers)).contains(Duration.ZERO);
+	}
+
+	private RequestBudget budget(int callsPerMinute, int burst) {
+		return new RequestBudget("test", callsPerMinute, burst, 0, time, () -> time.now(TimeUnit.NANOSECONDS));
+	}
+}
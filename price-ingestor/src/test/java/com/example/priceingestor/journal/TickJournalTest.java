@@ -0,0 +1,134 @@
+package com.example.priceingestor.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.PriceWriter;
+import com.example.priceingestor.service.PriceSink;
+import com.example.priceingestor.service.PriceWriters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TickJournalTest {
+
+	private static final Instant BUCKET = Instant.parse("2026-01-01T00:01:00Z");
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void replaysPendingRecordsAfterReopen() {
+		TickJournal journal = new TickJournal(dir, 4096, 8, 0, false);
+		journal.append(record("btc", 100.0));
+		JournalPosition afterSecond = journal.append(record("eth", null));
+		journal.close();
+
+		TickJournal reopened = new TickJournal(dir, 4096, 8, 0, false);
+		TickJournal.Entry first = reopened.read(reopened.checkpoint()).orElseThrow();
+		TickJournal.Entry second = reopened.read(first.next()).orElseThrow();
+
+		assertThat(first.record().ticks().get(0).symbol()).isEqualTo("btc");
+		assertThat(first.record().ticks().get(0).tsBucket()).isEqualTo(BUCKET);
+		assertThat(second.record().ticks().get(0).price()).isNull();
+		assertThat(second.next()).isEqualTo(afterSecond);
+		assertThat(reopened.read(second.next())).isEmpty();
+
+		reopened.commit(second.next());
+		assertThat(reopened.hasPending()).isFalse();
+	}
+
+	@Test
+	void rollsSegmentsAndTruncatesReplayedOnes() {
+		TickJournal journal = new TickJournal(dir, 512, 8, 0, false);
+		JournalPosition last = null;
+		for (int i = 0; i < 20; i++) {
+			last = journal.append(record("sym" + i, (double) i));
+		}
+		assertThat(journal.segmentCount()).isGreaterThan(1);
+
+		int replayed = 0;
+		JournalPosition pos = journal.checkpoint();
+		for (var e = journal.read(pos); e.isPresent(); e = journal.read(e.get().next())) {
+			replayed++;
+			pos = e.get().next();
+		}
+		journal.commit(pos);
+
+		assertThat(replayed).isEqualTo(20);
+		assertThat(pos).isEqualTo(last);
+		assertThat(journal.segmentCount()).isEqualTo(1);
+	}
+
+	@Test
+	void dropsOldestSegmentWhenOverBudget() {
+		TickJournal journal = new TickJournal(dir, 256, 2, 0, false);
+		for (int i = 0; i < 20; i++) {
+			journal.append(record("sym" + i, (double) i));
+		}
+
+		assertThat(journal.segmentCount()).isEqualTo(2);
+		assertThat(journal.droppedSegments()).isPositive();
+	}
+
+	@Test
+	void replayerSkipsARecordOfAnotherVersion() throws IOException {
+		TickJournal journal = new TickJournal(dir, 4096, 8, 0, false);
+		JournalPosition afterFirst = journal.append(record("btc", 100.0));
+		JournalPosition afterSecond = journal.append(record("eth", 200.0));
+		journal.close();
+		rewriteVersion(dir.resolve(String.format("%020d.seg", 1)), (byte) 9);
+
+		TickJournal reopened = new TickJournal(dir, 4096, 8, 0, false);
+		assertThat(reopened.hasPending()).isTrue();
+		assertThatThrownBy(() -> reopened.read(reopened.checkpoint()))
+			.isInstanceOfSatisfying(TickJournal.UnreadableRecordException.class, e -> assertThat(e.next()).isEqualTo(afterFirst));
+
+		PriceSink sink = mock(PriceSink.class);
+		PriceWriters writers = mock(PriceWriters.class);
+		when(writers.get(anyString())).thenReturn(mock(PriceWriter.class));
+		when(sink.persist(any(), anyList())).thenReturn(1);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		JournalReplayer replayer = new JournalReplayer(reopened, sink, writers, registry, "batch");
+
+		assertThat(replayer.drain()).isEqualTo(1);
+		verify(sink).persist(any(), any());
+		assertThat(reopened.checkpoint()).isEqualTo(afterSecond);
+		assertThat(registry.get("ingestor.journal.skipped_records").counter().count()).isEqualTo(1.0);
+	}
+
+	// Sets the version byte of the first record and fixes up its CRC, as a newer writer would have left it
+	private static void rewriteVersion(Path segment, byte version) throws IOException {
+		try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(8);
+			ch.read(header, 0);
+			ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+			ch.read(payload, 8);
+			payload.put(0, version);
+			CRC32 crc = new CRC32();
+			crc.update(payload.array());
+			ch.write(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), 4);
+			ch.write(payload.flip(), 8);
+		}
+	}
+
+	private static JournalRecord record(String symbol, Double price) {
+		return new JournalRecord(List.of(
+			new PriceTick("coingecko", symbol, symbol + "-id", symbol.toUpperCase(), "usd", price, 1e9, 0.5, BUCKET)));
+	}
+}
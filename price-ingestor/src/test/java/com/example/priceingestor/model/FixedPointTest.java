@@ -0,0 +1,39 @@
+package com.example.priceingestor.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+class FixedPointTest {
+
+	@Test
+	void parsesExactlyWhereADoubleWouldNot() {
+		assertThat(FixedPoint.parse("0.000000123456", 12)).isEqualTo(123456L);
+		assertThat(FixedPoint.parse("1.23e-7", 12)).isEqualTo(123000L);
+		assertThat(FixedPoint.parse("-65000.5", 1)).isEqualTo(-650005L);
+		// 18 significant digits survive, which a double (about 16) cannot hold
+		assertThat(FixedPoint.parse("123456.789012345678", 12)).isEqualTo(123456789012345678L);
+		// half-even on the 13th decimal, including digits past the 18 that are kept
+		assertThat(FixedPoint.parse("0.0000000000125", 12)).isEqualTo(12L);
+		assertThat(FixedPoint.parse("0.0000000000135", 12)).isEqualTo(14L);
+		assertThat(FixedPoint.parse("1234567890.12345678500", 8)).isEqualTo(123456789012345678L);
+		assertThat(FixedPoint.parse("1234567890.1234567850001", 8)).isEqualTo(123456789012345679L);
+		assertThat(FixedPoint.parse("1e7", 12)).isEqualTo(FixedPoint.NULL);
+		assertThat(FixedPoint.parse("12a", 2)).isEqualTo(FixedPoint.NULL);
+	}
+
+	@Test
+	void ticksAreNormalizedSoEqualPricesCompareEqual() {
+		PriceTick parsed = new PriceTick("coingecko", "btc", "bitcoin", "Bitcoin", "usd",
+			FixedPoint.parse("65000.500", 12), 12, null, null, null);
+		PriceTick fromDouble = new PriceTick("coingecko", "btc", "bitcoin", "Bitcoin", "usd", 65000.5, null, null, null);
+
+		assertThat(parsed).isEqualTo(fromDouble);
+		assertThat(parsed.priceFp()).isEqualTo(650005L);
+		assertThat(parsed.priceScale()).isEqualTo(1);
+		assertThat(FixedPoint.rescaleExact(parsed.priceFp(), parsed.priceScale(), 0)).isEqualTo(FixedPoint.NULL);
+		assertThat(FixedPoint.storageScale(parsed.priceFp(), parsed.priceScale())).isEqualTo(10);
+		assertThat(FixedPoint.unscaledOf(new BigDecimal("0.100000000000"))).isEqualTo(1L);
+	}
+}
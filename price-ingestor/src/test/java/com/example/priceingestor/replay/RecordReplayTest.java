@@ -0,0 +1,96 @@
+package com.example.priceingestor.replay;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.CoinMarket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class RecordReplayTest {
+
+	private static final String KEY = "/api/v3/coins/markets?vs_currency=usd&order=volume_desc&per_page=10&page=1&price_change_percentage=24h";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void storeRollsSegmentsAndReadsBack() throws Exception {
+		try (PayloadStore store = new PayloadStore(dir, 64)) {
+			for (int i = 0; i < 5; i++) {
+				store.append("/k" + i, i, 200, ("{\"n\":" + i + ",\"pad\":\"" + "x".repeat(100) + "\"}").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		List<PayloadStore.Entry> entries = PayloadStore.entries(dir);
+		assertThat(entries).extracting(PayloadStore.Entry::key).containsExactly("/k0", "/k1", "/k2", "/k3", "/k4");
+		assertThat(entries.get(4).segment()).isGreaterThan(entries.get(0).segment());
+		assertThat(new String(PayloadStore.read(dir, entries.get(3)), StandardCharsets.UTF_8)).startsWith("{\"n\":3,");
+	}
+
+	@Test
+	void submittedBodiesAreWrittenInOrderByClose() throws Exception {
+		try (PayloadStore store = new PayloadStore(dir, 1 << 20)) {
+			for (int i = 0; i < 50; i++) {
+				store.submit("/k" + i, i, 200, ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		List<PayloadStore.Entry> entries = PayloadStore.entries(dir);
+		assertThat(entries).hasSize(50);
+		assertThat(entries).extracting(PayloadStore.Entry::key).startsWith("/k0", "/k1").endsWith("/k49");
+		assertThat(new String(PayloadStore.read(dir, entries.get(49)), StandardCharsets.UTF_8)).isEqualTo("{\"n\":49}");
+	}
+
+	@Test
+	void replaysInOrderAndRecordsWhatItServes() throws Exception {
+		try (PayloadStore store = new PayloadStore(dir.resolve("original"), 1 << 20)) {
+			store.append(KEY, 5, 200, "[{\"id\":\"bitcoin\",\"symbol\":\"btc\",\"name\":\"Bitcoin\",\"current_price\":1.0}]".getBytes(StandardCharsets.UTF_8));
+			store.append(KEY, 5, 200, "[{\"id\":\"bitcoin\",\"symbol\":\"btc\",\"name\":\"Bitcoin\",\"current_price\":2.0}]".getBytes(StandardCharsets.UTF_8));
+		}
+		ReplayServer server = new ReplayServer(dir.resolve("original").toString(), 0, 0, false);
+		server.start();
+		try (PayloadStore rerecord = new PayloadStore(dir.resolve("copy"), 1 << 20)) {
+			MarketClient client = new MarketClient(WebClient.builder(), new SimpleMeterRegistry(),
+					"http://127.0.0.1:" + server.port() + "/api/v3", "x-key", "", "coingecko", 6000, 10, 0, Optional.of(rerecord));
+
+			assertThat(client.topMarkets("usd", 10, 1).collectList().block(Duration.ofSeconds(10)))
+					.extracting(CoinMarket::current_price).containsExactly(1.0);
+			assertThat(client.topMarkets("usd", 10, 1).collectList().block(Duration.ofSeconds(10)))
+					.extracting(CoinMarket::current_price).containsExactly(2.0);
+			// loop is off, so the recording is exhausted
+			assertThatThrownBy(() -> client.topMarkets("usd", 10, 1).collectList().block(Duration.ofSeconds(10)))
+					.hasMessageContaining("410");
+		} finally {
+			server.stop();
+		}
+
+		assertThat(PayloadStore.entries(dir.resolve("copy"))).extracting(PayloadStore.Entry::key).containsExactly(KEY, KEY);
+	}
+
+	@Test
+	void replayClockAdvancesAtReplaySpeed() throws Exception {
+		try (PayloadStore store = new PayloadStore(dir, 1 << 20)) {
+			store.append(KEY, 5, 200, "[]".getBytes(StandardCharsets.UTF_8));
+		}
+		ReplayServer server = new ReplayServer(dir.toString(), 0, 100, true);
+		server.start();
+		try {
+			Instant cycle = Instant.now();
+			// a 600 ms cycle at 100x is a recorded minute, so consecutive cycles get their own ts_bucket
+			assertThat(Duration.between(server.replayTime(cycle), server.replayTime(cycle.plusMillis(600))))
+					.isEqualTo(Duration.ofMinutes(1));
+		} finally {
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.priceingestor.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.priceingestor.model.LastPrice;
+import com.example.priceingestor.model.PriceTick;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+// Runs findPriceAt against the database (as PriceIngestorApplicationTests does); each test rolls back
+@SpringBootTest(properties = "ingestor.live.enabled=false")
+@Transactional
+class PriceRepositoryTest {
+
+	private static final Duration MAX_SKIP = Duration.ofMinutes(60);
+
+	// recent enough for PartitionManager's partitions, in a source no ingestor writes
+	private final Instant at = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(Duration.ofMinutes(5));
+	private final String source = "test-" + UUID.randomUUID();
+
+	@Autowired
+	PriceRepository prices;
+
+	@Autowired
+	HeartbeatRepository heartbeats;
+
+	@Test
+	void carriesTheLastRowForwardWithinMaxSkipWithoutHeartbeats() {
+		prices.write(List.of(tick("btc", 64000.125, at.minus(Duration.ofMinutes(10)))));
+
+		assertThat(prices.findPriceAt(source, "btc", "usd", at.plusSeconds(42), MAX_SKIP))
+			.hasValueSatisfying(p -> {
+				assertThat(p.price()).isEqualTo(64000.125);
+				assertThat(p.tsBucket()).isEqualTo(at.minus(Duration.ofMinutes(10)));
+			});
+	}
+
+	@Test
+	void carriesNothingAcrossMoreThanMaxSkip() {
+		prices.write(List.of(tick("btc", 64000.125, at.minus(MAX_SKIP))));
+
+		assertThat(prices.findPriceAt(source, "btc", "usd", at, MAX_SKIP)).isEmpty();
+	}
+
+	@Test
+	void fillsAHeartbeatMinuteWhenTheSymbolItselfWasObservedUnchanged() {
+		PriceTick written = tick("btc", 64000.125, at.minus(Duration.ofMinutes(1)));
+		prices.write(List.of(written));
+		heartbeats.record(source, at, 1, 1);
+		heartbeats.recordUnchanged(List.of(tick("btc", 64000.125, at)));
+
+		assertThat(prices.findPriceAt(source, "btc", "usd", at, MAX_SKIP))
+			.map(LastPrice::tsBucket).contains(written.tsBucket());
+	}
+
+	@Test
+	void leavesAHeartbeatMinuteEmptyWhenOnlyOtherSymbolsWereObserved() {
+		prices.write(List.of(tick("btc", 64000.125, at.minus(Duration.ofMinutes(1)))));
+		// the source answered at `at`, but btc's page did not
+		heartbeats.record(source, at, 1, 1);
+		heartbeats.recordUnchanged(List.of(tick("eth", 3000.5, at)));
+
+		assertThat(prices.findPriceAt(source, "btc", "usd", at, MAX_SKIP)).isEmpty();
+		assertThat(prices.findPriceAt(source, "btc", "usd", at.minus(Duration.ofMinutes(1)), MAX_SKIP)).isPresent();
+	}
+
+	private PriceTick tick(String symbol, double price, Instant bucket) {
+		return new PriceTick(source, symbol, symbol + "-test", symbol.toUpperCase(), "usd", price, null, null, bucket);
+	}
+}
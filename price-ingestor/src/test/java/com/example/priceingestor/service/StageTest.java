@@ -0,0 +1,55 @@
+package com.example.priceingestor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class StageTest {
+
+	@Test
+	void fullBufferBlocksTheProducerAndBatchesAreCapped() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+		Stage<Integer> stage = new Stage<>("test", registry, 2, 1, 3, batch -> {
+			batchSizes.add(batch.size());
+			release.await();
+		});
+		try {
+			stage.put(1);
+			// the worker holds item 1, so two more fill the buffer
+			while (!batchSizes.contains(1)) {
+				Thread.sleep(5);
+			}
+			stage.put(2);
+			stage.put(3);
+			CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> {
+				try {
+					stage.put(4);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			Thread.sleep(200);
+			assertThat(blocked).isNotDone();
+			assertThat(registry.get("ingestor.stage.queue.depth").tag("stage", "test").gauge().value()).isEqualTo(2.0);
+
+			release.countDown();
+			blocked.get(5, TimeUnit.SECONDS);
+			while (registry.get("ingestor.stage.items").tag("stage", "test").counter().count() < 4) {
+				Thread.sleep(5);
+			}
+			assertThat(batchSizes).allMatch(n -> n <= 3);
+			assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(4);
+			assertThat(registry.get("ingestor.stage.service").tag("stage", "test").timer().count()).isEqualTo(batchSizes.size());
+		} finally {
+			stage.close();
+		}
+	}
+}
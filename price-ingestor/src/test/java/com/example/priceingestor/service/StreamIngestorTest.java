@@ -0,0 +1,91 @@
+package com.example.priceingestor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.example.priceingestor.model.PriceTick;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+class StreamIngestorTest {
+
+	@Test
+	void conflatesToLastValuePerBucket() {
+		StreamConflator conflator = new StreamConflator("coincap", "usd", Map.of(
+				"bitcoin", new StreamConflator.Asset("btc", "Bitcoin", Duration.ofSeconds(10)),
+				"ethereum", new StreamConflator.Asset("eth", "Ethereum", Duration.ofMinutes(1))));
+		Instant t0 = Instant.parse("2025-06-01T12:00:00Z");
+
+		conflator.offer("bitcoin", 1, 0, t0.plusSeconds(1));
+		conflator.offer("bitcoin", 2, 0, t0.plusSeconds(9));
+		conflator.offer("ethereum", 10, 0, t0.plusSeconds(5));
+		// next bitcoin bucket opens before anyone drained the previous one
+		conflator.offer("bitcoin", 3, 0, t0.plusSeconds(12));
+		assertThat(conflator.offer("dogecoin", 1, 1, t0)).isFalse();
+
+		assertThat(conflator.drain(t0.plusSeconds(15))).containsExactly(
+				new PriceTick("coincap", "btc", "bitcoin", "Bitcoin", "usd", 2.0, null, null, t0));
+		assertThat(conflator.drain(t0.plusSeconds(60))).containsExactlyInAnyOrder(
+				new PriceTick("coincap", "btc", "bitcoin", "Bitcoin", "usd", 3.0, null, null, t0.plusSeconds(10)),
+				new PriceTick("coincap", "eth", "ethereum", "Ethereum", "usd", 10.0, null, null, t0));
+		assertThat(conflator.pending()).isZero();
+	}
+
+	@Test
+	void reconnectsAndFlushesThroughIngestion() throws Exception {
+		AtomicInteger connections = new AtomicInteger();
+		// stand-in ticker stream: the first connection sends two updates and hangs up, later ones send one
+		DisposableServer server = HttpServer.create().host("127.0.0.1").port(0)
+				.route(routes -> routes.ws("/prices", (in, out) -> {
+					List<String> frames = connections.incrementAndGet() == 1
+							? List.of("{\"bitcoin\":\"1.5\"}", "{\"bitcoin\":\"64000.123456789012\",\"dogecoin\":\"0.1\"}")
+							: List.of("{\"ethereum\":3000}");
+					return out.sendString(Flux.fromIterable(frames)).then();
+				}))
+				.bindNow();
+
+		List<PriceTick> persisted = new CopyOnWriteArrayList<>();
+		IngestionService ingestion = mock(IngestionService.class);
+		doAnswer(inv -> {
+			persisted.addAll(inv.getArgument(0));
+			return 0;
+		}).when(ingestion).persist(anyList());
+
+		StreamIngestor stream = new StreamIngestor(ingestion, new SimpleMeterRegistry(),
+				"ws://127.0.0.1:" + server.port() + "/prices", "coincap", "bitcoin:btc:Bitcoin,ethereum:eth:Ethereum",
+				"bitcoin,ethereum", 60_000, 60_000, 5_000);
+		try {
+			stream.start();
+			long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (connections.get() < 2 && System.nanoTime() < deadline) {
+				Thread.sleep(50);
+			}
+			Thread.sleep(300);
+		} finally {
+			stream.stop();
+			server.disposeNow();
+		}
+
+		assertThat(connections.get()).isGreaterThanOrEqualTo(2);
+		assertThat(persisted).extracting(PriceTick::symbol, PriceTick::price)
+				.contains(tuple("eth", 3000.0));
+		// decoded from the text, not through a double
+		assertThat(persisted).filteredOn(t -> t.symbol().equals("btc"))
+				.extracting(PriceTick::priceFp, PriceTick::priceScale)
+				.containsExactly(tuple(64000123456789012L, 12));
+		assertThat(persisted).extracting(PriceTick::symbol).doesNotContain("dogecoin");
+	}
+}
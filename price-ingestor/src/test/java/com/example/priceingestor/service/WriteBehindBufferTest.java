@@ -0,0 +1,66 @@
+package com.example.priceingestor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.priceingestor.model.PriceTick;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class WriteBehindBufferTest {
+
+	private static final Instant BUCKET = Instant.parse("2025-01-01T00:00:00Z");
+
+	@Test
+	void laterTicksReplaceEarlierOnesAndCloseFlushesTheRest() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		List<List<PriceTick>> flushes = new CopyOnWriteArrayList<>();
+		WriteBehindBuffer buffer = new WriteBehindBuffer(registry, 10, 10, Duration.ofHours(1), ticks -> {
+			flushes.add(List.copyOf(ticks));
+			return ticks.size();
+		});
+
+		buffer.offer(List.of(tick("btc", 1.0), tick("eth", 2.0)));
+		buffer.offer(List.of(tick("btc", 3.0)));
+		assertThat(buffer.size()).isEqualTo(2);
+		assertThat(flushes).isEmpty();
+
+		buffer.close();
+		assertThat(flushes).hasSize(1);
+		assertThat(flushes.get(0)).extracting(PriceTick::price).containsExactly(3.0, 2.0);
+		assertThat(registry.get("ingestor.write_behind.coalesced").counter().count()).isEqualTo(1.0);
+		assertThat(registry.get("ingestor.write_behind.rows").counter().count()).isEqualTo(2.0);
+	}
+
+	@Test
+	void closeDoesNotWaitOutTheRetryBackoff() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		List<List<PriceTick>> flushes = new CopyOnWriteArrayList<>();
+		WriteBehindBuffer buffer = new WriteBehindBuffer(new SimpleMeterRegistry(), 10, 1, Duration.ofHours(1), ticks -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new IllegalStateException("database down");
+			}
+			flushes.add(List.copyOf(ticks));
+			return ticks.size();
+		});
+
+		buffer.offer(List.of(tick("btc", 1.0)));
+		while (calls.get() == 0) {
+			Thread.sleep(10);
+		}
+		long start = System.nanoTime();
+		buffer.close();
+
+		// the failed tick was requeued and written by close(), well before a retry was due
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+		assertThat(flushes).singleElement().satisfies(f -> assertThat(f).extracting(PriceTick::price).containsExactly(1.0));
+	}
+
+	private static PriceTick tick(String symbol, double price) {
+		return new PriceTick("coingecko", symbol, symbol, symbol, "usd", price, null, null, BUCKET);
+	}
+}
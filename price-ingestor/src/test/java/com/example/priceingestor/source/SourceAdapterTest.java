@@ -0,0 +1,118 @@
+package com.example.priceingestor.source;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.priceingestor.client.MarketClient;
+import com.example.priceingestor.model.CoinRef;
+import com.example.priceingestor.model.PriceTick;
+import com.example.priceingestor.repository.CoinRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+class SourceAdapterTest {
+
+	private static final Instant BUCKET = Instant.parse("2025-06-01T12:00:00Z");
+
+	@Test
+	void coinGeckoPagesAreNormalized() throws Exception {
+		try (StubServer stub = new StubServer().json("/coins/markets", """
+				[{"id":"bitcoin","symbol":"btc","name":"Bitcoin","current_price":65000.5,
+				  "market_cap":1.2E12,"price_change_percentage_24h":-1.5,"total_volume":3.1E10}]
+				""")) {
+			MarketClient client = new MarketClient(WebClient.builder(), new SimpleMeterRegistry(),
+					stub.baseUrl(), "x-key", "", "coingecko", 600, 10, 0, Optional.empty());
+			CoinGeckoAdapter adapter = new CoinGeckoAdapter(client, List.of("usd"), "top", 10, 80, 4, Optional.empty(),
+					new CoinRepository(null, null), "simple", 200);
+
+			List<PriceTick> ticks = adapter.fetch(BUCKET, adapter.workUnits(BUCKET)).collectList().block(Duration.ofSeconds(10));
+
+			assertThat(ticks).containsExactly(
+					new PriceTick("coingecko", "btc", "bitcoin", "Bitcoin", "usd", 65000.5, 1.2E12, -1.5, BUCKET));
+			assertThat(stub.requests).singleElement().asString().contains("page=1").contains("vs_currency=usd");
+		}
+	}
+
+	@Test
+	void coinGeckoUnitsStopShortlyPastTheLastSweep() throws Exception {
+		try (StubServer stub = new StubServer().json("/coins/markets", """
+				[{"id":"bitcoin","symbol":"btc","name":"Bitcoin","current_price":65000.5}]
+				""")) {
+			MarketClient client = new MarketClient(WebClient.builder(), new SimpleMeterRegistry(),
+					stub.baseUrl(), "x-key", "", "coingecko", 600, 10, 0, Optional.empty());
+			CoinGeckoAdapter adapter = new CoinGeckoAdapter(client, List.of("usd"), "all", 10, 80, 1, Optional.empty(),
+					new CoinRepository(null, null), "markets", 200);
+
+			// nothing known yet: every page is a unit, but the walk stops at the first short page
+			assertThat(adapter.workUnits(BUCKET)).hasSize(80);
+			adapter.fetch(BUCKET, adapter.workUnits(BUCKET)).collectList().block(Duration.ofSeconds(10));
+
+			assertThat(stub.requests).hasSize(1);
+			assertThat(adapter.workUnits(BUCKET)).containsExactly("usd/page:1", "usd/page:2", "usd/page:3");
+		}
+	}
+
+	@Test
+	void coinGeckoHotPathPollsTheCachedUniverseThroughSimplePrice() throws Exception {
+		CoinRepository coins = new CoinRepository(null, null) {
+			@Override
+			public List<String> universe() {
+				return List.of("bitcoin", "ethereum", "solana");
+			}
+
+			@Override
+			public Optional<CoinRef> find(String coinId) {
+				return "solana".equals(coinId) ? Optional.empty() : Optional.of(new CoinRef(1, coinId, coinId.substring(0, 3), coinId, 9));
+			}
+		};
+		try (StubServer stub = new StubServer().json("/simple/price", """
+				{"bitcoin":{"usd":65000.123456789012,"usd_market_cap":1.2E12,"usd_24h_change":-1.5},
+				 "ethereum":{"usd":3000.0,"usd_market_cap":null,"usd_24h_change":2.0},
+				 "solana":{"usd":150.0}}
+				""")) {
+			MarketClient client = new MarketClient(WebClient.builder(), new SimpleMeterRegistry(),
+					stub.baseUrl(), "x-key", "", "coingecko", 600, 10, 0, Optional.empty());
+			CoinGeckoAdapter adapter = new CoinGeckoAdapter(client, List.of("usd"), "top", 10, 80, 4, Optional.empty(),
+					coins, "simple", 3);
+
+			List<String> units = adapter.workUnits(BUCKET);
+			List<PriceTick> ticks = adapter.fetch(BUCKET, units).collectList().block(Duration.ofSeconds(10));
+
+			// metadata comes from the cache, so only numbers cross the wire; an uncached coin is skipped.
+			// The price is exact to all 17 digits, which a double would not hold.
+			assertThat(units).containsExactly("simple:0");
+			assertThat(ticks).containsExactlyInAnyOrder(
+					new PriceTick("coingecko", "bit", "bitcoin", "bitcoin", "usd", 65000123456789012L, 12, 1.2E12, -1.5, BUCKET),
+					new PriceTick("coingecko", "eth", "ethereum", "ethereum", "usd", 3000.0, null, 2.0, BUCKET));
+			assertThat(stub.requests).singleElement().asString().contains("/simple/price").contains("ids=bitcoin,ethereum,solana");
+		}
+	}
+
+	@Test
+	void coinPaprikaTickersAreNormalized() throws Exception {
+		try (StubServer stub = new StubServer().json("/tickers", """
+				[{"id":"btc-bitcoin","name":"Bitcoin","symbol":"BTC","rank":1,
+				  "quotes":{"USD":{"price":65001.0,"market_cap":1.3E12,"percent_change_24h":2.0,"volume_24h":1.0},
+				            "EUR":{"price":60000.0,"market_cap":1.2E12,"percent_change_24h":2.1}}},
+				 {"id":"xyz-nope","name":"No Quote","symbol":"XYZ","rank":2,"quotes":{}},
+				 {"id":"eth-ethereum","name":"Ethereum","symbol":"ETH","rank":3,
+				  "quotes":{"USD":{"price":3000.0,"market_cap":3.6E11,"percent_change_24h":null}}}]
+				""")) {
+			CoinPaprikaAdapter adapter = new CoinPaprikaAdapter(WebClient.builder(), new SimpleMeterRegistry(),
+					stub.baseUrl(), 600, 2, List.of("usd", "eur"), Optional.empty());
+
+			List<PriceTick> ticks = adapter.fetch(BUCKET, adapter.workUnits(BUCKET)).collectList().block(Duration.ofSeconds(10));
+
+			// one call serves both currencies; the coin without quotes is skipped and does not count towards the limit
+			assertThat(ticks).containsExactly(
+					new PriceTick("coinpaprika", "btc", "btc-bitcoin", "Bitcoin", "usd", 65001.0, 1.3E12, 2.0, BUCKET),
+					new PriceTick("coinpaprika", "btc", "btc-bitcoin", "Bitcoin", "eur", 60000.0, 1.2E12, 2.1, BUCKET),
+					new PriceTick("coinpaprika", "eth", "eth-ethereum", "Ethereum", "usd", 3000.0, 3.6E11, null, BUCKET));
+			assertThat(stub.requests).singleElement().asString().contains("quotes=USD,EUR");
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.example.priceingestor.source;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+// Minimal local stand-in for an upstream price API: serves a canned JSON body per path and
+// records the query strings it was asked for
+class StubServer implements AutoCloseable {
+
+	private final HttpServer server;
+	final List<String> requests = new CopyOnWriteArrayList<>();
+
+	StubServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	StubServer json(String path, String body) {
+		server.createContext(path, exchange -> {
+			requests.add(exchange.getRequestURI().toString());
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		return this;
+	}
+
+	String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
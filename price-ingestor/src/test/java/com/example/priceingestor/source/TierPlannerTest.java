@@ -0,0 +1,69 @@
+package com.example.priceingestor.source;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.example.priceingestor.model.CoinMarket;
+import com.example.priceingestor.repository.PriceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TierPlannerTest {
+
+	@Test
+	void ranksByVolatilityWithDemandAndStablecoinOverrides() {
+		Map<String, Double> vol = Map.of(
+				"bitcoin", 0.0001, "tether", 0.00001, "pepe", 0.004, "dogwifhat", 0.003, "smallcap", 0.005, "solana", 0.001);
+		Map<String, Double> volume = Map.of(
+				"pepe", 5e8, "dogwifhat", 2e8, "smallcap", 1e5, "solana", 3e9, "bitcoin", 3e10, "tether", 5e10);
+
+		Map<String, PollingTier> tiers = TierPlanner.assign(vol, volume, Set.of("bitcoin"), 1, 2, 1e7, 0.0002);
+
+		assertThat(tiers).containsExactlyInAnyOrderEntriesOf(Map.of(
+				"bitcoin", PollingTier.FAST,       // demand beats low volatility
+				"pepe", PollingTier.FAST,          // most volatile coin with enough volume
+				"smallcap", PollingTier.MEDIUM,    // volatile but too thin to be fast
+				"dogwifhat", PollingTier.MEDIUM,
+				"solana", PollingTier.SLOW,        // medium tier already full
+				"tether", PollingTier.SLOW));      // stablecoin
+	}
+
+	@Test
+	void sweepsUntilTieredThenPollsDueCoinsInBatches() {
+		PriceRepository prices = mock(PriceRepository.class);
+		when(prices.realizedVolatility(eq("coingecko"), eq("usd"), any()))
+				.thenReturn(Map.of("a", 0.01, "b", 0.009, "c", 0.008, "usdt", 0.0));
+		TierPlanner planner = new TierPlanner(prices, new SimpleMeterRegistry(), "coingecko", List.of("usd"), 60_000,
+				List.of(), 2, 1, 0, 0.0002, 3, 10, 1, 6, false);
+		Instant bucket = Instant.ofEpochSecond(60 * 1003);   // cycle 1003: no sweep, no medium
+
+		assertThat(planner.plan(bucket).sweep()).isTrue();
+
+		for (String id : List.of("a", "b", "c", "usdt")) {
+			planner.observe(new CoinMarket(id, id, id, 1.0, null, null, 1e9));
+		}
+		planner.retier();
+
+		TierPlanner.Plan next = planner.plan(bucket.plusSeconds(60));   // cycle 1004: no medium
+		assertThat(next.sweep()).isFalse();
+		assertThat(next.batches()).containsExactly(List.of("a"), List.of("b"));
+		assertThat(planner.plan(bucket.plusSeconds(120)).batches()).hasSize(3);   // cycle 1005: medium adds c
+		assertThat(planner.plan(bucket.plusSeconds(420)).sweep()).isTrue();      // cycle 1010
+	}
+
+	@Test
+	void refusesSharding() {
+		assertThatThrownBy(() -> new TierPlanner(mock(PriceRepository.class), new SimpleMeterRegistry(), "coingecko",
+				List.of("usd"), 60_000, List.of(), 2, 1, 0, 0.0002, 3, 10, 1, 6, true))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("ingestor.sharding.enabled=false");
+	}
+}